@@ -0,0 +1,99 @@
+package io.jcp.benchmark;
+
+import io.jcp.executor.QueryExecutors;
+import io.jcp.listener.QueryLifecycleListener;
+import io.jcp.service.impl.ManagedQueryExecutorService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of submission to the executor service
+ * and the cost of notifying listeners
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExecutorServiceBenchmark {
+    private static final int BATCH = 1000;
+
+    @Param({"1", "4", "16"})
+    private int threads;
+
+    @Param({"0", "1", "8"})
+    private int listeners;
+
+    private ExecutorService executor;
+    private ManagedQueryExecutorService<Integer, Integer> service;
+
+    @Setup
+    public void setUp() {
+        this.executor = QueryExecutors.fixed(this.threads);
+        List<QueryLifecycleListener<Integer>> fanOut = new ArrayList<>();
+        for (int i = 0; i < this.listeners; i++) {
+            fanOut.add(new CountingListener());
+        }
+        this.service = new ManagedQueryExecutorService<>(
+            this.executor, fanOut, new LatencyProvider(0, TimeUnit.NANOSECONDS)
+        );
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.service.shutdown();
+        this.executor.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void submit(Blackhole blackhole) throws InterruptedException, ExecutionException {
+        List<Future<Optional<Integer>>> futures = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            futures.add(this.service.submit(i));
+        }
+        for (Future<Optional<Integer>> future : futures) {
+            blackhole.consume(future.get());
+        }
+    }
+
+    private static final class CountingListener implements QueryLifecycleListener<Integer> {
+        private long events;
+
+        @Override
+        public void onSubmit(Integer request) {
+            this.events++;
+        }
+
+        @Override
+        public void onExec(Integer request) {
+            this.events++;
+        }
+
+        @Override
+        public void onFetch(Integer request, long nanos) {
+            this.events += nanos;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package io.jcp.benchmark;
+
+import io.jcp.provider.Provider;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Provider which answers every query with the query itself
+ * after configurable latency, zero latency measures pure overhead
+ */
+final class LatencyProvider implements Provider<Integer, Integer> {
+    private final long latencyNanos;
+
+    LatencyProvider(long latency, TimeUnit unit) {
+        this.latencyNanos = unit.toNanos(latency);
+    }
+
+    @Override
+    public Optional<Integer> fetch(Integer query) {
+        if (this.latencyNanos > 0) {
+            long deadline = System.nanoTime() + this.latencyNanos;
+            long left;
+            while ((left = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(left);
+            }
+        }
+        return Optional.of(query);
+    }
+}
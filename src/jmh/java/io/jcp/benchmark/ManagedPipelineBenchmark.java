@@ -0,0 +1,68 @@
+package io.jcp.benchmark;
+
+import io.jcp.executor.QueryExecutors;
+import io.jcp.pipeline.impl.ManagedPipeline;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Time to fetch the whole stage of managed pipeline,
+ * for sizing the pool against number of queries and their latency
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ManagedPipelineBenchmark {
+    @Param({"1", "4", "16"})
+    private int threads;
+
+    @Param({"10", "1000"})
+    private int queries;
+
+    @Param({"0", "100"})
+    private long latencyMicros;
+
+    private ExecutorService executor;
+    private ManagedPipeline<Integer, Integer> pipeline;
+    private List<Integer> batch;
+
+    @Setup
+    public void setUp() {
+        this.executor = QueryExecutors.fixed(this.threads);
+        this.pipeline = new ManagedPipeline<>(
+            this.executor, new LatencyProvider(this.latencyMicros, TimeUnit.MICROSECONDS)
+        );
+        this.batch = IntStream.range(0, this.queries).boxed().collect(toList());
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.executor.shutdown();
+    }
+
+    @Benchmark
+    public List<Optional<Integer>> products() {
+        return this.pipeline.run(this.batch).products();
+    }
+}
@@ -0,0 +1,51 @@
+package io.jcp.benchmark;
+
+import io.jcp.pipeline.Pipeline;
+import io.jcp.pipeline.impl.QueryPipeline;
+import io.jcp.service.QueryExecutorService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of synchronous pipeline per chained stage
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryPipelineBenchmark {
+    @Param({"1", "4", "16"})
+    private int stages;
+
+    private Pipeline<Integer, Integer> pipeline;
+
+    @Setup
+    public void setUp() {
+        LatencyProvider provider = new LatencyProvider(0, TimeUnit.NANOSECONDS);
+        QueryExecutorService<Integer, Integer> service = provider::fetch;
+        this.pipeline = new QueryPipeline<Integer, Integer>().using(service);
+    }
+
+    @Benchmark
+    public Optional<Integer> product() {
+        Pipeline<Integer, Integer> chain = this.pipeline.run(0);
+        for (int i = 1; i < this.stages; i++) {
+            chain = chain.run(p -> p + 1);
+        }
+        return chain.product();
+    }
+}
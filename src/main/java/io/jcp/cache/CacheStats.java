@@ -0,0 +1,58 @@
+package io.jcp.cache;
+
+/**
+ * Snapshot of cache statistics
+ */
+public final class CacheStats {
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long expirations;
+
+    public CacheStats(long hits, long misses, long evictions, long expirations) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.expirations = expirations;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return number of entries removed to fit into size or weight limits
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return number of entries removed since their time to live is over
+     */
+    public long getExpirations() {
+        return expirations;
+    }
+
+    /**
+     * @return share of requests which hit the cache, or zero if there were no requests
+     */
+    public double getHitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{" +
+            "hits=" + hits +
+            ", misses=" + misses +
+            ", evictions=" + evictions +
+            ", expirations=" + expirations +
+            '}';
+    }
+}
@@ -0,0 +1,354 @@
+package io.jcp.cache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Disk-backed key-value store which survives restarts
+ * <p>
+ * Values are appended to preallocated segment files which are memory mapped,
+ * so reads are served by {@link java.nio.MappedByteBuffer} without system calls.
+ * Index from key to value location is kept in memory and is rebuilt from
+ * segments on open. Every record is protected by a checksum, so a record
+ * torn by a crash is dropped together with everything written after it.
+ * <p>
+ * Overwritten values stay in their segments as garbage. Sealed segments which
+ * are mostly garbage are compacted in background: their live values are moved
+ * to the active segment and the files are deleted
+ */
+public final class PersistentStore implements Closeable {
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+    private static final int HEADER = 3 * Integer.BYTES;
+    private static final double COMPACTION_THRESHOLD = 0.5;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final ConcurrentMap<String, Location> index;
+    private final ConcurrentSkipListMap<Long, Segment> segments;
+    private final ExecutorService compactor;
+    private final Object compaction;
+    private Segment active;
+    private boolean closed;
+
+    /**
+     * Opens the store in specified directory and restores its index
+     *
+     * @param directory   directory to keep segments in
+     * @param segmentSize size of the segment file in bytes
+     */
+    public PersistentStore(Path directory, int segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.index = new ConcurrentHashMap<>();
+        this.segments = new ConcurrentSkipListMap<>();
+        this.compactor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "jcp-store-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.compaction = new Object();
+        try {
+            Files.createDirectories(directory);
+            restore();
+        } catch (IOException e) {
+            throw new IllegalStateException("can't open store in " + directory, e);
+        }
+    }
+
+    public Optional<byte[]> get(String key) {
+        Location location = this.index.get(key);
+        if (location == null) {
+            return Optional.empty();
+        }
+        return Optional.of(location.read());
+    }
+
+    /**
+     * @throws IllegalArgumentException if the key is empty, as empty key marks
+     *                                  the end of records in the segment
+     */
+    public void put(String key, byte[] value) {
+        if (key.isEmpty()) {
+            throw new IllegalArgumentException("key must not be empty");
+        }
+        boolean rolled;
+        synchronized (this) {
+            if (this.closed) {
+                throw new IllegalStateException("store is closed");
+            }
+            Segment current = this.active;
+            append(key, value, Optional.empty());
+            rolled = current != this.active;
+        }
+        if (rolled) {
+            compactInBackground();
+        }
+    }
+
+    public int size() {
+        return this.index.size();
+    }
+
+    /**
+     * @return number of segment files
+     */
+    public int segments() {
+        return this.segments.size();
+    }
+
+    /**
+     * Forces written values to the disk
+     */
+    public synchronized void flush() {
+        this.active.buffer.force();
+    }
+
+    /**
+     * Compacts sealed segments which are mostly garbage
+     */
+    public void compact() {
+        synchronized (this.compaction) {
+            wasted().forEach(this::compact);
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            this.active.buffer.force();
+        }
+        this.compactor.shutdown();
+    }
+
+    private synchronized List<Segment> wasted() {
+        List<Segment> wasted = new ArrayList<>();
+        for (Segment segment : this.segments.values()) {
+            if (segment != this.active && segment.isWasted()) {
+                wasted.add(segment);
+            }
+        }
+        return wasted;
+    }
+
+    private void compactInBackground() {
+        try {
+            this.compactor.execute(this::compact);
+        } catch (Throwable t) {
+            t.printStackTrace();
+        }
+    }
+
+    private void compact(Segment segment) {
+        for (Map.Entry<String, Location> entry : this.index.entrySet()) {
+            Location location = entry.getValue();
+            if (location.segment == segment) {
+                synchronized (this) {
+                    if (this.closed) {
+                        return;
+                    }
+                    if (this.index.get(entry.getKey()) == location) {
+                        append(entry.getKey(), location.read(), Optional.of(location));
+                    }
+                }
+            }
+        }
+        this.segments.remove(segment.id);
+        try {
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Appends the record to the active segment and points the key to it
+     *
+     * @param replaced location which must be replaced, or nothing
+     *                 if previous value must be overwritten unconditionally
+     */
+    private void append(String key, byte[] value, Optional<Location> replaced) {
+        byte[] k = key.getBytes(StandardCharsets.UTF_8);
+        int length = HEADER + k.length + value.length;
+        if (this.active.position + length > this.active.capacity()) {
+            roll(length);
+        }
+        Segment segment = this.active;
+        int offset = segment.position;
+        CRC32 crc = new CRC32();
+        crc.update(k);
+        crc.update(value);
+        ByteBuffer writer = segment.buffer.duplicate();
+        writer.position(offset);
+        writer.putInt(k.length).putInt(value.length).putInt((int) crc.getValue());
+        writer.put(k).put(value);
+        if (writer.remaining() >= Integer.BYTES) {
+            writer.putInt(0);
+        }
+        segment.position += length;
+        segment.live.addAndGet(length);
+        Location location = new Location(segment, offset + HEADER + k.length, value.length, length);
+        if (replaced.isPresent()) {
+            if (this.index.replace(key, replaced.get(), location)) {
+                replaced.get().release();
+            } else {
+                location.release();
+            }
+        } else {
+            Location previous = this.index.put(key, location);
+            if (previous != null) {
+                previous.release();
+            }
+        }
+    }
+
+    private void roll(int minimum) {
+        long id = this.active == null ? 0 : this.active.id + 1;
+        Path path = this.directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+        try {
+            this.active = new Segment(id, path, map(path, Math.max(this.segmentSize, minimum)));
+        } catch (IOException e) {
+            throw new IllegalStateException("can't create segment " + path, e);
+        }
+        this.segments.put(id, this.active);
+    }
+
+    private void restore() throws IOException {
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(
+            this.directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX
+        )) {
+            stream.forEach(paths::add);
+        }
+        Collections.sort(paths);
+        for (Path path : paths) {
+            String name = path.getFileName().toString();
+            long id = Long.parseLong(
+                name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())
+            );
+            Segment segment = new Segment(id, path, map(path, (int) Files.size(path)));
+            scan(segment);
+            this.segments.put(id, segment);
+            this.active = segment;
+        }
+        if (this.active == null) {
+            roll(0);
+        }
+    }
+
+    private void scan(Segment segment) {
+        ByteBuffer reader = segment.buffer.duplicate();
+        int position = 0;
+        while (position + HEADER <= reader.capacity()) {
+            reader.position(position);
+            int keyLength = reader.getInt();
+            int valueLength = reader.getInt();
+            int checksum = reader.getInt();
+            if (keyLength <= 0 || valueLength < 0
+                || (long) position + HEADER + keyLength + valueLength > reader.capacity()) {
+                break;
+            }
+            byte[] k = new byte[keyLength];
+            byte[] value = new byte[valueLength];
+            reader.get(k).get(value);
+            CRC32 crc = new CRC32();
+            crc.update(k);
+            crc.update(value);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            int length = HEADER + keyLength + valueLength;
+            segment.live.addAndGet(length);
+            Location previous = this.index.put(
+                new String(k, StandardCharsets.UTF_8),
+                new Location(segment, position + HEADER + keyLength, valueLength, length)
+            );
+            if (previous != null) {
+                previous.release();
+            }
+            position += length;
+        }
+        segment.position = position;
+    }
+
+    private static MappedByteBuffer map(Path path, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(
+            path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE
+        )) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    private static final class Segment {
+        private final long id;
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private final AtomicLong live;
+        private int position;
+
+        private Segment(long id, Path path, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.buffer = buffer;
+            this.live = new AtomicLong();
+        }
+
+        private int capacity() {
+            return this.buffer.capacity();
+        }
+
+        private boolean isWasted() {
+            return this.live.get() < this.position * COMPACTION_THRESHOLD;
+        }
+    }
+
+    private static final class Location {
+        private final Segment segment;
+        private final int offset;
+        private final int length;
+        private final int recordLength;
+
+        private Location(Segment segment, int offset, int length, int recordLength) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.recordLength = recordLength;
+        }
+
+        private byte[] read() {
+            ByteBuffer reader = this.segment.buffer.duplicate();
+            reader.position(this.offset);
+            byte[] value = new byte[this.length];
+            reader.get(value);
+            return value;
+        }
+
+        private void release() {
+            this.segment.live.addAndGet(-this.recordLength);
+        }
+    }
+}
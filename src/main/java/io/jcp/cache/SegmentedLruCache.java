@@ -0,0 +1,290 @@
+package io.jcp.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded concurrent cache with segmented LRU eviction
+ * <p>
+ * Keys are striped over independently locked segments. Each segment keeps
+ * newly added entries in the probation area and moves them to the protected
+ * area on the second hit, so entries which were used only once are evicted
+ * first and don't wash out frequently used ones.
+ * <p>
+ * Cache is limited by number of entries, by total weight of entries
+ * and by time to live of every entry. Number of entries is split evenly
+ * between segments, so it's respected per segment, not globally. Total
+ * weight is bounded globally, so entry of any weight up to the limit may
+ * be cached: once it's exceeded, segments evict their least recently used
+ * entries in turn, starting after the segment which was written
+ *
+ * @param <K> is a type of key
+ * @param <V> is a type of value
+ */
+public final class SegmentedLruCache<K, V> {
+    private static final int MAX_SEGMENTS = 16;
+    private static final double PROTECTED_RATIO = 0.8;
+
+    private final Segment<K, V>[] segments;
+    private final Weigher<? super K, ? super V> weigher;
+    private final long maxWeight;
+    private final AtomicLong weight;
+    private final long ttlNanos;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder evictions;
+    private final LongAdder expirations;
+
+    /**
+     * Creates cache limited by number of entries only
+     *
+     * @param maxEntries maximum number of entries
+     */
+    public SegmentedLruCache(long maxEntries) {
+        this(maxEntries, Long.MAX_VALUE, (k, v) -> 0, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Creates cache limited by number of entries and time to live
+     *
+     * @param maxEntries maximum number of entries
+     * @param ttl        time to live of every entry
+     * @param unit       unit of time to live
+     */
+    public SegmentedLruCache(long maxEntries, long ttl, TimeUnit unit) {
+        this(maxEntries, Long.MAX_VALUE, (k, v) -> 0, ttl, unit);
+    }
+
+    /**
+     * Creates cache limited by number of entries, total weight and time to live
+     *
+     * @param maxEntries maximum number of entries
+     * @param maxWeight  maximum total weight of entries
+     * @param weigher    function to calculate weight of the entry
+     * @param ttl        time to live of every entry
+     * @param unit       unit of time to live
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public SegmentedLruCache(
+        long maxEntries,
+        long maxWeight,
+        Weigher<? super K, ? super V> weigher,
+        long ttl,
+        TimeUnit unit
+    ) {
+        if (maxEntries < 1 || maxWeight < 1 || ttl < 1) {
+            throw new IllegalArgumentException("cache limits must be positive");
+        }
+        int count = 1;
+        while (count * 2 <= Math.min(MAX_SEGMENTS, maxEntries)) {
+            count *= 2;
+        }
+        this.weight = new AtomicLong();
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            this.segments[i] = new Segment<>(share(maxEntries, count, i), this.weight);
+        }
+        this.weigher = weigher;
+        this.maxWeight = maxWeight;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.evictions = new LongAdder();
+        this.expirations = new LongAdder();
+    }
+
+    public Optional<V> get(K key) {
+        Segment<K, V> segment = segment(key);
+        long now = System.nanoTime();
+        synchronized (segment) {
+            Entry<V> entry = segment.protect.get(key);
+            boolean probation = false;
+            if (entry == null) {
+                entry = segment.probation.get(key);
+                probation = entry != null;
+            }
+            if (entry == null) {
+                this.misses.increment();
+                return Optional.empty();
+            }
+            if (now - entry.written >= this.ttlNanos) {
+                segment.remove(key);
+                this.expirations.increment();
+                this.misses.increment();
+                return Optional.empty();
+            }
+            if (probation) {
+                segment.promote(key, entry);
+            }
+            this.hits.increment();
+            return Optional.of(entry.value);
+        }
+    }
+
+    public void put(K key, V value) {
+        Entry<V> entry = new Entry<>(value, this.weigher.weigh(key, value), System.nanoTime());
+        int index = index(key);
+        Segment<K, V> segment = this.segments[index];
+        synchronized (segment) {
+            Entry<V> previous = segment.protect.containsKey(key) ?
+                segment.protect.put(key, entry) : segment.probation.put(key, entry);
+            this.weight.addAndGet(entry.weight - (previous == null ? 0 : previous.weight));
+            this.evictions.add(segment.evict());
+        }
+        trim(index);
+    }
+
+    public void invalidate(K key) {
+        Segment<K, V> segment = segment(key);
+        synchronized (segment) {
+            segment.remove(key);
+        }
+    }
+
+    public long size() {
+        long size = 0;
+        for (Segment<K, V> segment : this.segments) {
+            synchronized (segment) {
+                size += segment.probation.size() + segment.protect.size();
+            }
+        }
+        return size;
+    }
+
+    public long weight() {
+        return this.weight.get();
+    }
+
+    public CacheStats stats() {
+        return new CacheStats(
+            this.hits.sum(), this.misses.sum(),
+            this.evictions.sum(), this.expirations.sum()
+        );
+    }
+
+    private Segment<K, V> segment(K key) {
+        return this.segments[index(key)];
+    }
+
+    private int index(K key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        return h & (this.segments.length - 1);
+    }
+
+    /**
+     * Evicts least recently used entries of the segments in turn until
+     * total weight fits the limit, written segment is the last one to lose
+     * an entry, so the entry just written is evicted only if nothing else is left
+     *
+     * @param written index of the segment which was written
+     */
+    private void trim(int written) {
+        int index = written;
+        int idle = 0;
+        while (this.weight.get() > this.maxWeight && idle < this.segments.length) {
+            index = (index + 1) & (this.segments.length - 1);
+            Segment<K, V> segment = this.segments[index];
+            synchronized (segment) {
+                if (segment.size() == 0) {
+                    idle++;
+                    continue;
+                }
+                segment.evictEldest();
+            }
+            idle = 0;
+            this.evictions.increment();
+        }
+    }
+
+    private static long share(long limit, int count, int index) {
+        if (limit == Long.MAX_VALUE) {
+            return limit;
+        }
+        return limit / count + (index < limit % count ? 1 : 0);
+    }
+
+    private static final class Segment<K, V> {
+        private final long maxEntries;
+        private final long maxProtected;
+        private final LinkedHashMap<K, Entry<V>> probation;
+        private final LinkedHashMap<K, Entry<V>> protect;
+        private final AtomicLong weight;
+
+        /**
+         * @param weight total weight of the cache, is updated by the segment
+         */
+        private Segment(long maxEntries, AtomicLong weight) {
+            this.maxEntries = maxEntries;
+            this.weight = weight;
+            this.maxProtected = (long) (maxEntries * PROTECTED_RATIO);
+            this.probation = new LinkedHashMap<>(16, 0.75f, true);
+            this.protect = new LinkedHashMap<>(16, 0.75f, true);
+        }
+
+        private void promote(K key, Entry<V> entry) {
+            this.probation.remove(key);
+            this.protect.put(key, entry);
+            while (this.protect.size() > this.maxProtected) {
+                Map.Entry<K, Entry<V>> eldest = removeEldest(this.protect);
+                this.probation.put(eldest.getKey(), eldest.getValue());
+            }
+        }
+
+        private void remove(K key) {
+            Entry<V> entry = this.protect.remove(key);
+            if (entry == null) {
+                entry = this.probation.remove(key);
+            }
+            if (entry != null) {
+                this.weight.addAndGet(-entry.weight);
+            }
+        }
+
+        private long evict() {
+            long evicted = 0;
+            while (size() > this.maxEntries) {
+                evictEldest();
+                evicted++;
+            }
+            return evicted;
+        }
+
+        private void evictEldest() {
+            Map.Entry<K, Entry<V>> eldest = removeEldest(
+                this.probation.isEmpty() ? this.protect : this.probation
+            );
+            this.weight.addAndGet(-eldest.getValue().weight);
+        }
+
+        private long size() {
+            return this.probation.size() + this.protect.size();
+        }
+
+        private static <K, V> Map.Entry<K, Entry<V>> removeEldest(
+            LinkedHashMap<K, Entry<V>> area
+        ) {
+            Iterator<Map.Entry<K, Entry<V>>> iterator = area.entrySet().iterator();
+            Map.Entry<K, Entry<V>> eldest = iterator.next();
+            iterator.remove();
+            return eldest;
+        }
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long weight;
+        private final long written;
+
+        private Entry(V value, long weight, long written) {
+            this.value = value;
+            this.weight = weight;
+            this.written = written;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package io.jcp.cache;
+
+/**
+ * Calculates the weight of the cache entry, e.g. its size in bytes
+ *
+ * @param <K> is a type of key
+ * @param <V> is a type of value
+ */
+@FunctionalInterface
+public interface Weigher<K, V> {
+    long weigh(K key, V value);
+}
@@ -0,0 +1,31 @@
+package io.jcp.codec;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Converts objects to bytes and back, e.g. to keep them on the disk
+ *
+ * @param <V> is a type of object
+ */
+public interface Codec<V> {
+    byte[] encode(V value);
+
+    V decode(byte[] bytes);
+
+    /**
+     * @return codec of strings in UTF-8
+     */
+    static Codec<String> utf8() {
+        return new Codec<String>() {
+            @Override
+            public byte[] encode(String value) {
+                return value.getBytes(StandardCharsets.UTF_8);
+            }
+
+            @Override
+            public String decode(byte[] bytes) {
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+        };
+    }
+}
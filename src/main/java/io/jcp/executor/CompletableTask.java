@@ -0,0 +1,47 @@
+package io.jcp.executor;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.function.Supplier;
+
+/**
+ * Task which reports its outcome to {@link CompletableFuture}
+ * <p>
+ * Unlike {@link CompletableFuture#supplyAsync}, the future completes even
+ * if the task is cancelled before it's started, e.g. when it's dropped
+ * from the queue of the executor, and cancellation or exceptional
+ * completion of the future, e.g. by timeout, interrupts the running task
+ */
+final class CompletableTask<V> extends FutureTask<V> {
+    private final CompletableFuture<V> future;
+
+    CompletableTask(Supplier<V> task) {
+        super(task::get);
+        this.future = new CompletableFuture<>();
+        this.future.whenComplete((v, t) -> {
+            if (t != null) {
+                cancel(true);
+            }
+        });
+    }
+
+    CompletableFuture<V> future() {
+        return this.future;
+    }
+
+    @Override
+    protected void done() {
+        try {
+            this.future.complete(get());
+        } catch (CancellationException e) {
+            this.future.cancel(false);
+        } catch (ExecutionException e) {
+            this.future.completeExceptionally(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            this.future.completeExceptionally(e);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package io.jcp.executor;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs tasks via underlying executor, but lets not more than
+ * specified number of tasks to be executed at the same time
+ * <p>
+ * Tasks over the limit wait for a permit inside of the underlying
+ * executor, so it's intended to be used with cheap threads
+ */
+final class ConcurrencyLimitedExecutorService extends AbstractExecutorService {
+    private final ExecutorService executor;
+    private final Semaphore permits;
+
+    ConcurrencyLimitedExecutorService(ExecutorService executor, int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be positive");
+        }
+        this.executor = executor;
+        this.permits = new Semaphore(concurrency);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        this.executor.execute(() -> {
+            this.permits.acquireUninterruptibly();
+            try {
+                command.run();
+            } finally {
+                this.permits.release();
+            }
+        });
+    }
+
+    /**
+     * @return number of tasks which wait for a permit
+     */
+    int countQueued() {
+        return this.permits.getQueueLength();
+    }
+
+    @Override
+    public void shutdown() {
+        this.executor.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return this.executor.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return this.executor.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return this.executor.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return this.executor.awaitTermination(timeout, unit);
+    }
+}
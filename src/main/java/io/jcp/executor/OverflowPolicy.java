@@ -0,0 +1,73 @@
+package io.jcp.executor;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+
+/**
+ * Defines what happens with the task submitted to executor with full queue
+ */
+public enum OverflowPolicy {
+    /**
+     * Caller is blocked until there is a room in the queue. Thread of the same
+     * pool, e.g. one which starts the next stage of the pipeline, runs the task
+     * by itself instead, so threads of the pool never wait for each other
+     */
+    BLOCK {
+        @Override
+        RejectedExecutionHandler handler() {
+            return (task, executor) -> {
+                if (executor.isShutdown()) {
+                    throw new RejectedExecutionException("executor is shut down");
+                }
+                if (WORKER_OF.get() == executor) {
+                    task.run();
+                    return;
+                }
+                try {
+                    executor.getQueue().put(task);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RejectedExecutionException("interrupted while waiting for the queue", e);
+                }
+            };
+        }
+    },
+    /**
+     * Submission fails immediately with {@link RejectedExecutionException}
+     */
+    FAIL {
+        @Override
+        RejectedExecutionHandler handler() {
+            return (task, executor) -> {
+                throw new RejectedExecutionException("queue is full");
+            };
+        }
+    },
+    /**
+     * The oldest task in the queue is cancelled to make a room for the new one
+     */
+    SHED_OLDEST {
+        @Override
+        RejectedExecutionHandler handler() {
+            return (task, executor) -> {
+                if (executor.isShutdown()) {
+                    throw new RejectedExecutionException("executor is shut down");
+                }
+                Runnable oldest = executor.getQueue().poll();
+                if (oldest instanceof Future) {
+                    ((Future<?>) oldest).cancel(false);
+                }
+                executor.execute(task);
+            };
+        }
+    };
+
+    /**
+     * Pool whose task is being run by the current thread
+     */
+    static final ThreadLocal<Executor> WORKER_OF = new ThreadLocal<>();
+
+    abstract RejectedExecutionHandler handler();
+}
@@ -0,0 +1,258 @@
+package io.jcp.executor;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Factory of executors to run queries on
+ * <p>
+ * Library is built against Java 8, so virtual threads are looked up
+ * at runtime and are available only when running on Java 21 or newer
+ */
+public final class QueryExecutors {
+    private static final String VIRTUAL_THREAD_FACTORY = "newVirtualThreadPerTaskExecutor";
+    private static final ScheduledExecutorService TIMER = newTimer();
+    private static final ExecutorService EXPIRER = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "jcp-deadline");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final long MAX_TIMEOUT_NANOS = Long.MAX_VALUE / 2;
+
+    private QueryExecutors() {
+    }
+
+    /**
+     * Creates pool of platform threads of fixed size
+     *
+     * @param threads number of threads
+     * @return executor which runs up to {@code threads} queries at the same time
+     */
+    public static ExecutorService fixed(int threads) {
+        return new ThreadPoolExecutor(
+            threads, threads, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>()
+        );
+    }
+
+    /**
+     * Creates pool of platform threads of fixed size with bounded queue
+     *
+     * @param threads  number of threads
+     * @param capacity maximum number of tasks waiting in the queue
+     * @param policy   what to do with the task when queue is full
+     * @return executor which runs up to {@code threads} queries at the same time
+     */
+    public static ExecutorService fixed(int threads, int capacity, OverflowPolicy policy) {
+        return new ThreadPoolExecutor(
+            threads, threads, 1, TimeUnit.MINUTES,
+            new ArrayBlockingQueue<>(capacity), policy.handler()
+        ) {
+            @Override
+            protected void beforeExecute(Thread thread, Runnable task) {
+                OverflowPolicy.WORKER_OF.set(this);
+            }
+
+            @Override
+            protected void afterExecute(Runnable task, Throwable error) {
+                OverflowPolicy.WORKER_OF.remove();
+            }
+        };
+    }
+
+    /**
+     * Creates work-stealing pool, which suits crawls where every
+     * fetched product spawns many new queries
+     *
+     * @param parallelism number of threads
+     * @return executor which runs up to {@code parallelism} queries at the same time
+     */
+    public static ExecutorService workStealing(int parallelism) {
+        return new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Creates executor which runs each query on its own virtual thread
+     *
+     * @param concurrency maximum number of queries executed at the same time
+     * @return executor backed by virtual threads
+     * @throws IllegalStateException if virtual threads are not supported by runtime
+     */
+    public static ExecutorService virtual(int concurrency) {
+        return bounded(virtualThreadPerTask(), concurrency);
+    }
+
+    /**
+     * Limits the number of tasks which are executed by specified executor at the same time
+     *
+     * @param executor    executor to run tasks
+     * @param concurrency maximum number of tasks executed at the same time
+     * @return executor with limited concurrency
+     */
+    public static ExecutorService bounded(ExecutorService executor, int concurrency) {
+        return new ConcurrencyLimitedExecutorService(executor, concurrency);
+    }
+
+    /**
+     * Counts tasks which wait for a thread of the executor
+     *
+     * @param executor executor created by this factory, or any
+     *                 {@link ThreadPoolExecutor} or {@link ForkJoinPool}
+     * @return number of waiting tasks, or zero if executor doesn't expose it
+     */
+    public static long countQueued(Executor executor) {
+        if (executor instanceof ThreadPoolExecutor) {
+            return ((ThreadPoolExecutor) executor).getQueue().size();
+        }
+        if (executor instanceof ForkJoinPool) {
+            ForkJoinPool pool = (ForkJoinPool) executor;
+            return pool.getQueuedSubmissionCount() + pool.getQueuedTaskCount();
+        }
+        if (executor instanceof ConcurrencyLimitedExecutorService) {
+            return ((ConcurrencyLimitedExecutorService) executor).countQueued();
+        }
+        return 0;
+    }
+
+    /**
+     * Executes the task via specified executor
+     * <p>
+     * Returned future completes even if the task is dropped by the executor
+     * without being run, and its cancellation interrupts the running task
+     *
+     * @param task     task to execute
+     * @param executor executor to run the task
+     * @return {@link java.util.concurrent.CompletableFuture} of the task result
+     */
+    public static <V> CompletableFuture<V> submit(Supplier<V> task, Executor executor) {
+        CompletableTask<V> completable = new CompletableTask<>(task);
+        executor.execute(completable);
+        return completable.future();
+    }
+
+    /**
+     * Completes the future with {@link TimeoutException} if it isn't done
+     * by the deadline. Future returned by {@link #submit} interrupts
+     * its task when it's completed this way. Dependents of the timed out
+     * future run on a shared pool of daemon threads, so neither the timer
+     * nor the other deadlines wait for them
+     *
+     * @param future   future to bound
+     * @param deadline {@link System#nanoTime} by which the future must be done
+     * @return the same future
+     * @see #within(CompletableFuture, long, Executor)
+     */
+    public static <V> CompletableFuture<V> within(CompletableFuture<V> future, long deadline) {
+        return within(future, deadline, EXPIRER);
+    }
+
+    /**
+     * Completes the future with {@link TimeoutException} if it isn't done
+     * by the deadline. Future is completed on the executor rather than
+     * on the shared timer, so its dependents don't delay other timers
+     *
+     * @param future   future to bound
+     * @param deadline {@link System#nanoTime} by which the future must be done
+     * @param executor executor to complete the timed out future on
+     * @return the same future
+     */
+    public static <V> CompletableFuture<V> within(
+        CompletableFuture<V> future, long deadline, Executor executor
+    ) {
+        if (future.isDone()) {
+            return future;
+        }
+        long delay = deadline - System.nanoTime();
+        if (delay <= 0) {
+            future.completeExceptionally(new TimeoutException("deadline exceeded"));
+            return future;
+        }
+        Runnable expire = () -> future.completeExceptionally(new TimeoutException("deadline exceeded"));
+        ScheduledFuture<?> timeout = TIMER.schedule(() -> {
+            try {
+                executor.execute(expire);
+            } catch (RejectedExecutionException e) {
+                expire.run();
+            }
+        }, delay, TimeUnit.NANOSECONDS);
+        future.whenComplete((v, t) -> timeout.cancel(false));
+        return future;
+    }
+
+    /**
+     * Deadlines may wrap around, as {@link System#nanoTime} may be negative,
+     * so they must be compared by the sign of their difference, e.g.
+     * {@code a - b < 0}. Timeout is limited to a half of the range,
+     * so that such comparison of two deadlines stays correct
+     *
+     * @return {@link System#nanoTime} after specified timeout
+     */
+    public static long deadline(long timeout, TimeUnit unit) {
+        return System.nanoTime() + Math.min(unit.toNanos(timeout), MAX_TIMEOUT_NANOS);
+    }
+
+    /**
+     * Shared timer to schedule delayed actions, such as flushes and deadlines
+     * <p>
+     * Timer runs on a single daemon thread, so scheduled actions must be
+     * short and must hand over any real work to other executors
+     *
+     * @return shared timer
+     */
+    public static ScheduledExecutorService timer() {
+        return TIMER;
+    }
+
+    /**
+     * @return true if runtime is able to create virtual threads
+     */
+    public static boolean isVirtualSupported() {
+        return virtualThreadFactory() != null;
+    }
+
+    private static ExecutorService virtualThreadPerTask() {
+        Method factory = virtualThreadFactory();
+        if (factory == null) {
+            throw new IllegalStateException(
+                "virtual threads are not supported by this runtime. Java 21 or newer is required"
+            );
+        }
+        try {
+            return (ExecutorService) factory.invoke(null);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("can't create virtual thread executor", e);
+        }
+    }
+
+    private static ScheduledExecutorService newTimer() {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "jcp-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+
+    private static Method virtualThreadFactory() {
+        try {
+            return Executors.class.getMethod(VIRTUAL_THREAD_FACTORY);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
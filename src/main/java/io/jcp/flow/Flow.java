@@ -0,0 +1,66 @@
+package io.jcp.flow;
+
+/**
+ * Interfaces of demand-driven streams of items
+ * <p>
+ * Library is built against Java 8, so it declares the same interfaces
+ * as {@code java.util.concurrent.Flow} of Java 9, with the same contract.
+ * Subscriber receives no more items than it requested via its subscription,
+ * hence slow subscriber throttles the publisher
+ */
+public final class Flow {
+
+    private Flow() {
+    }
+
+    /**
+     * Producer of items which are received by subscribers
+     *
+     * @param <T> is a type of item
+     */
+    @FunctionalInterface
+    public interface Publisher<T> {
+        /**
+         * Adds the subscriber, which gets {@link Subscriber#onSubscribe} first,
+         * or {@link Subscriber#onError} if it can't be subscribed
+         */
+        void subscribe(Subscriber<? super T> subscriber);
+    }
+
+    /**
+     * Receiver of items
+     *
+     * @param <T> is a type of item
+     */
+    public interface Subscriber<T> {
+        void onSubscribe(Subscription subscription);
+
+        void onNext(T item);
+
+        /**
+         * Is called once on unrecoverable error, no calls follow it
+         */
+        void onError(Throwable throwable);
+
+        /**
+         * Is called once when there are no more items, no calls follow it
+         */
+        void onComplete();
+    }
+
+    /**
+     * Link between publisher and subscriber
+     */
+    public interface Subscription {
+        /**
+         * Adds {@code n} items to the demand of the subscriber. Non-positive
+         * demand fails the subscription with {@link IllegalArgumentException}
+         */
+        void request(long n);
+
+        /**
+         * Stops sending items to the subscriber
+         */
+        void cancel();
+    }
+}
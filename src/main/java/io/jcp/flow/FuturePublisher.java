@@ -0,0 +1,147 @@
+package io.jcp.flow;
+
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Publishes results of the futures in the order of iteration
+ * <p>
+ * Futures are taken from the iterator only on demand and the next one is
+ * awaited via continuation, so no thread waits for a future. Once a future
+ * is done the next ones are taken on the executor, never on the thread which
+ * completed the future, because taking from the iterator may block. If the
+ * iterator starts work as futures are taken, slow subscriber throttles the
+ * work. Futures which complete exceptionally are skipped. Iterator which is
+ * {@link AutoCloseable} is closed when the subscription is cancelled
+ *
+ * @param <T> is a type of item
+ */
+public final class FuturePublisher<T> implements Flow.Publisher<T> {
+    private final Supplier<Iterator<CompletableFuture<T>>> futures;
+    private final Executor executor;
+
+    /**
+     * @param futures  source of futures, which is called once per subscriber
+     * @param executor executor to take next futures on
+     */
+    public FuturePublisher(Supplier<Iterator<CompletableFuture<T>>> futures, Executor executor) {
+        this.futures = futures;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        Iterator<CompletableFuture<T>> futures;
+        try {
+            futures = this.futures.get();
+        } catch (Throwable t) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(t);
+            return;
+        }
+        subscriber.onSubscribe(new Emission<>(subscriber, futures, this.executor));
+    }
+
+    private static final class Emission<T> implements Flow.Subscription {
+        private final Flow.Subscriber<? super T> subscriber;
+        private final Iterator<CompletableFuture<T>> futures;
+        private final Executor executor;
+        private final AtomicLong requested;
+        private final AtomicInteger wip;
+        private CompletableFuture<T> current;
+        private volatile boolean done;
+
+        private Emission(
+            Flow.Subscriber<? super T> subscriber,
+            Iterator<CompletableFuture<T>> futures,
+            Executor executor
+        ) {
+            this.subscriber = subscriber;
+            this.futures = futures;
+            this.executor = executor;
+            this.requested = new AtomicLong();
+            this.wip = new AtomicInteger();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                fail(new IllegalArgumentException("demand must be positive"));
+                return;
+            }
+            this.requested.accumulateAndGet(n, (r, m) -> r + m < 0 ? Long.MAX_VALUE : r + m);
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            this.done = true;
+            if (this.futures instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) this.futures).close();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        /**
+         * Emits items while there is a demand, only one thread emits
+         * at a time and nested calls are handled by the running loop
+         */
+        private void drain() {
+            if (this.wip.getAndIncrement() != 0) {
+                return;
+            }
+            do {
+                try {
+                    emit();
+                } catch (Throwable t) {
+                    fail(t);
+                }
+            } while (this.wip.decrementAndGet() != 0);
+        }
+
+        private void emit() {
+            while (!this.done && this.requested.get() > 0) {
+                if (this.current == null) {
+                    if (!this.futures.hasNext()) {
+                        this.done = true;
+                        this.subscriber.onComplete();
+                        return;
+                    }
+                    this.current = this.futures.next();
+                }
+                if (!this.current.isDone()) {
+                    this.current.whenCompleteAsync((p, t) -> drain(), this.executor);
+                    return;
+                }
+                CompletableFuture<T> future = this.current;
+                this.current = null;
+                if (!future.isCompletedExceptionally()) {
+                    this.requested.decrementAndGet();
+                    this.subscriber.onNext(future.join());
+                }
+            }
+        }
+
+        private void fail(Throwable t) {
+            if (!this.done) {
+                this.done = true;
+                this.subscriber.onError(t);
+            }
+        }
+    }
+}
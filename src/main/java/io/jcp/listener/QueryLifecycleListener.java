@@ -7,4 +7,47 @@ public interface QueryLifecycleListener<T> {
 
     default void onExec(T request) {
     }
+
+    /**
+     * Is called once per attempt of the query, when it's handed over
+     * for execution, so every fetch and every error follows it
+     */
+    default void onStart(T request) {
+    }
+
+    /**
+     * Is called when the query isn't done by its deadline and is cancelled
+     */
+    default void onTimeout(T request) {
+    }
+
+    /**
+     * Is called when the query is started
+     *
+     * @param nanos time the query waited in the scheduler and in the queue of the pool
+     */
+    default void onQueueWait(T request, long nanos) {
+    }
+
+    /**
+     * Is called when fetch of the query is done, successfully or not
+     *
+     * @param nanos time spent by the provider
+     */
+    default void onFetch(T request, long nanos) {
+    }
+
+    /**
+     * Is called when callback of the query returns
+     *
+     * @param nanos time spent by the callback
+     */
+    default void onCallback(T request, long nanos) {
+    }
+
+    /**
+     * Is called when fetch of the query fails
+     */
+    default void onError(T request, Throwable error) {
+    }
 }
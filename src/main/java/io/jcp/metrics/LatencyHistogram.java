@@ -0,0 +1,145 @@
+package io.jcp.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of latencies over a sliding window
+ * <p>
+ * Like HdrHistogram, every power of two is split into {@value #SUB_BUCKETS}
+ * linear buckets, so any percentile is reported with relative error
+ * below 1/{@value #SUB_BUCKETS} while recording is a single atomic
+ * increment. Values above about 4.9 hours are counted as that maximum.
+ * <p>
+ * Window is split into slices, the oldest slice is dropped as time goes on
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int MAX_EXPONENT = 44;
+    private static final long MAX_VALUE = (1L << MAX_EXPONENT) - 1;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private final Slices slices;
+    private final AtomicLongArray[] buckets;
+
+    /**
+     * Creates histogram over the last minute
+     */
+    public LatencyHistogram() {
+        this(1, TimeUnit.MINUTES, 6);
+    }
+
+    /**
+     * @param window length of the sliding window
+     * @param unit   unit of window
+     * @param slices number of slices the window is split into
+     */
+    public LatencyHistogram(long window, TimeUnit unit, int slices) {
+        this.slices = new Slices(window, unit, slices);
+        this.buckets = new AtomicLongArray[slices];
+        for (int i = 0; i < slices; i++) {
+            this.buckets[i] = new AtomicLongArray(BUCKETS);
+        }
+    }
+
+    /**
+     * @param nanos latency in nanoseconds, negative values are ignored
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            return;
+        }
+        int slice = this.slices.current(this::reset);
+        this.buckets[slice].incrementAndGet(index(Math.min(nanos, MAX_VALUE)));
+    }
+
+    /**
+     * @return number of latencies recorded within the window
+     */
+    public long count() {
+        long count = 0;
+        for (long c : merged()) {
+            count += c;
+        }
+        return count;
+    }
+
+    /**
+     * @param quantile quantile in [0, 1], e.g. 0.99
+     * @return latency in nanoseconds which is not exceeded by the specified
+     * share of latencies within the window, or zero if there are none
+     */
+    public long percentile(double quantile) {
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException("quantile must be in [0, 1]");
+        }
+        long[] merged = merged();
+        long count = 0;
+        for (long c : merged) {
+            count += c;
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < merged.length; i++) {
+            seen += merged[i];
+            if (seen >= rank) {
+                return highest(i);
+            }
+        }
+        return MAX_VALUE;
+    }
+
+    /**
+     * @return the window length in nanoseconds
+     */
+    public long window() {
+        return this.slices.windowNanos();
+    }
+
+    private long[] merged() {
+        long[] merged = new long[BUCKETS];
+        for (int s = 0; s < this.buckets.length; s++) {
+            if (!this.slices.isLive(s)) {
+                continue;
+            }
+            AtomicLongArray slice = this.buckets[s];
+            for (int i = 0; i < BUCKETS; i++) {
+                merged[i] += slice.get(i);
+            }
+        }
+        return merged;
+    }
+
+    private void reset(int slice) {
+        AtomicLongArray counts = this.buckets[slice];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @return the highest value which falls into the bucket
+     */
+    static long highest(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS - 1 + SUB_BITS;
+        int sub = index % SUB_BUCKETS;
+        int shift = exponent - SUB_BITS;
+        return ((long) (SUB_BUCKETS + sub) << shift) + (1L << shift) - 1;
+    }
+}
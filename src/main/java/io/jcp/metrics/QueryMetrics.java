@@ -0,0 +1,108 @@
+package io.jcp.metrics;
+
+import io.jcp.listener.QueryLifecycleListener;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Listener which collects latencies of every phase of the query
+ * lifecycle and rates of fetches over a sliding window
+ *
+ * @param <T> is a type of query
+ */
+public final class QueryMetrics<T> implements QueryLifecycleListener<T> {
+    private final LatencyHistogram queueWait;
+    private final LatencyHistogram fetch;
+    private final LatencyHistogram callback;
+    private final SlidingCounter attempts;
+    private final SlidingCounter fetches;
+    private final SlidingCounter errors;
+    private final SlidingCounter timeouts;
+
+    /**
+     * Creates metrics over the last minute
+     */
+    public QueryMetrics() {
+        this(1, TimeUnit.MINUTES, 6);
+    }
+
+    /**
+     * @param window length of the sliding window
+     * @param unit   unit of window
+     * @param slices number of slices the window is split into
+     */
+    public QueryMetrics(long window, TimeUnit unit, int slices) {
+        this.queueWait = new LatencyHistogram(window, unit, slices);
+        this.fetch = new LatencyHistogram(window, unit, slices);
+        this.callback = new LatencyHistogram(window, unit, slices);
+        this.attempts = new SlidingCounter(window, unit, slices);
+        this.fetches = new SlidingCounter(window, unit, slices);
+        this.errors = new SlidingCounter(window, unit, slices);
+        this.timeouts = new SlidingCounter(window, unit, slices);
+    }
+
+    @Override
+    public void onStart(T request) {
+        this.attempts.increment();
+    }
+
+    @Override
+    public void onQueueWait(T request, long nanos) {
+        this.queueWait.record(nanos);
+    }
+
+    @Override
+    public void onFetch(T request, long nanos) {
+        this.fetch.record(nanos);
+        this.fetches.increment();
+    }
+
+    @Override
+    public void onCallback(T request, long nanos) {
+        this.callback.record(nanos);
+    }
+
+    @Override
+    public void onError(T request, Throwable error) {
+        this.errors.increment();
+    }
+
+    @Override
+    public void onTimeout(T request) {
+        this.timeouts.increment();
+    }
+
+    public LatencyHistogram queueWait() {
+        return this.queueWait;
+    }
+
+    public LatencyHistogram fetch() {
+        return this.fetch;
+    }
+
+    public LatencyHistogram callback() {
+        return this.callback;
+    }
+
+    /**
+     * @return fetches per second, both successful and failed
+     */
+    public double throughput() {
+        return this.fetches.rate();
+    }
+
+    /**
+     * Attempts which fail before their fetch, e.g. time out in the queue,
+     * are counted as well, so the share is taken of attempts, not of fetches
+     *
+     * @return share of attempts which failed, timeouts included
+     */
+    public double errorRate() {
+        long attempts = this.attempts.count();
+        return attempts == 0 ? 0 : Math.min(1, (double) this.errors.count() / attempts);
+    }
+
+    public long countTimeouts() {
+        return this.timeouts.count();
+    }
+}
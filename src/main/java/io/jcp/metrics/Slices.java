@@ -0,0 +1,62 @@
+package io.jcp.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntConsumer;
+
+/**
+ * Ring of time slices which make up a sliding window
+ * <p>
+ * Every slice remembers the epoch it was last used in. Slice is reset
+ * when it's reused in the next round, so the window always covers
+ * the last {@code count} slices. Values recorded concurrently with
+ * the reset of the slice may be lost
+ */
+final class Slices {
+    private final long sliceNanos;
+    private final AtomicLongArray epochs;
+
+    Slices(long window, TimeUnit unit, int count) {
+        if (window < 1 || count < 1) {
+            throw new IllegalArgumentException("window and number of slices must be positive");
+        }
+        this.sliceNanos = Math.max(1, unit.toNanos(window) / count);
+        this.epochs = new AtomicLongArray(count);
+        for (int i = 0; i < count; i++) {
+            this.epochs.set(i, Long.MIN_VALUE);
+        }
+    }
+
+    /**
+     * @param reset is called with the slice which must be cleared before reuse
+     * @return current slice
+     */
+    int current(IntConsumer reset) {
+        long epoch = epoch();
+        int slice = (int) Math.floorMod(epoch, (long) count());
+        long seen = this.epochs.get(slice);
+        if (seen != epoch && this.epochs.compareAndSet(slice, seen, epoch)) {
+            reset.accept(slice);
+        }
+        return slice;
+    }
+
+    /**
+     * @return true if slice belongs to the current window
+     */
+    boolean isLive(int slice) {
+        return this.epochs.get(slice) > epoch() - count();
+    }
+
+    int count() {
+        return this.epochs.length();
+    }
+
+    long windowNanos() {
+        return this.sliceNanos * count();
+    }
+
+    private long epoch() {
+        return Math.floorDiv(System.nanoTime(), this.sliceNanos);
+    }
+}
@@ -0,0 +1,56 @@
+package io.jcp.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free counter of events over a sliding window
+ */
+public final class SlidingCounter {
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final Slices slices;
+    private final AtomicLongArray counts;
+
+    /**
+     * Creates counter over the last minute
+     */
+    public SlidingCounter() {
+        this(1, TimeUnit.MINUTES, 6);
+    }
+
+    /**
+     * @param window length of the sliding window
+     * @param unit   unit of window
+     * @param slices number of slices the window is split into
+     */
+    public SlidingCounter(long window, TimeUnit unit, int slices) {
+        this.slices = new Slices(window, unit, slices);
+        this.counts = new AtomicLongArray(slices);
+    }
+
+    public void increment() {
+        int slice = this.slices.current(s -> this.counts.set(s, 0));
+        this.counts.incrementAndGet(slice);
+    }
+
+    /**
+     * @return number of events within the window
+     */
+    public long count() {
+        long count = 0;
+        for (int s = 0; s < this.counts.length(); s++) {
+            if (this.slices.isLive(s)) {
+                count += this.counts.get(s);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return average number of events per second within the window
+     */
+    public double rate() {
+        return count() * NANOS_PER_SECOND / this.slices.windowNanos();
+    }
+}
@@ -1,11 +1,18 @@
 package io.jcp.pipeline;
 
+import io.jcp.executor.QueryExecutors;
+import io.jcp.flow.Flow;
+import io.jcp.flow.FuturePublisher;
 import io.jcp.pipeline.callback.QueryCompleteCallback;
 import io.jcp.service.QueryExecutorService;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
@@ -91,4 +98,50 @@ public interface Pipeline<T, H> {
     default Optional<H> product() {
         return Optional.empty();
     }
+
+    /**
+     * Fetches exactly one product without blocking the caller
+     * <p>
+     * Implementations which can't fetch asynchronously
+     * complete the future in the calling thread
+     *
+     * @return {@link java.util.concurrent.CompletableFuture} of the product
+     */
+    default CompletableFuture<Optional<H>> productAsync() {
+        return CompletableFuture.completedFuture(product());
+    }
+
+    /**
+     * Fetches exactly one product which must be done by the deadline
+     *
+     * @param deadline {@link System#nanoTime} by which the product must be fetched
+     * @return {@link java.util.concurrent.CompletableFuture} of the product, which completes
+     * with {@link java.util.concurrent.TimeoutException} if deadline is exceeded
+     */
+    default CompletableFuture<Optional<H>> productAsync(long deadline) {
+        return QueryExecutors.within(productAsync(), deadline);
+    }
+
+    /**
+     * Publishes products on demand of the subscriber, next products
+     * are taken on the common pool
+     *
+     * @return {@link Flow.Publisher} of products
+     * @see #publisher(Executor)
+     */
+    default Flow.Publisher<Optional<H>> publisher() {
+        return publisher(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Publishes products on demand of the subscriber
+     * <p>
+     * Product is fetched once the publisher is subscribed
+     *
+     * @param executor executor to take next products on
+     * @return {@link Flow.Publisher} of products
+     */
+    default Flow.Publisher<Optional<H>> publisher(Executor executor) {
+        return new FuturePublisher<>(() -> Collections.singletonList(productAsync()).iterator(), executor);
+    }
 }
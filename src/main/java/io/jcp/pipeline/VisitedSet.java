@@ -0,0 +1,32 @@
+package io.jcp.pipeline;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers queries which were already crawled
+ * <p>
+ * Implementations must be thread safe, since queries are discovered
+ * concurrently
+ *
+ * @param <T> is a type of query
+ */
+@FunctionalInterface
+public interface VisitedSet<T> {
+
+    /**
+     * Marks query as visited
+     *
+     * @param query discovered query
+     * @return true if query wasn't visited before and must be crawled
+     */
+    boolean add(T query);
+
+    /**
+     * @return exact visited set which keeps every query in memory
+     */
+    static <T> VisitedSet<T> concurrent() {
+        Set<T> visited = ConcurrentHashMap.newKeySet();
+        return visited::add;
+    }
+}
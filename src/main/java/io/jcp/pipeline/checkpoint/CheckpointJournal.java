@@ -0,0 +1,258 @@
+package io.jcp.pipeline.checkpoint;
+
+import io.jcp.codec.Codec;
+import io.jcp.executor.QueryExecutors;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+/**
+ * Journal of queries of the long-running job which survives crashes
+ * <p>
+ * Query is recorded as pending before it's started and its key is recorded
+ * as done once its product is fetched. Records are buffered and are forced
+ * to the disk in batches every sync interval by the own thread of the journal,
+ * so a crash loses at most
+ * the last interval of records and queries done within it are fetched again.
+ * Every record is protected by a checksum, so a record torn by a crash is
+ * dropped together with everything written after it.
+ * <p>
+ * Journal keeps keys of done queries and pending queries in memory
+ * and is never compacted, hence it's meant for a single job
+ *
+ * @param <T> is a type of query
+ */
+public final class CheckpointJournal<T> implements Closeable {
+    private static final int HEADER = 2 * Integer.BYTES + 1;
+    private static final byte PENDING = 'P';
+    private static final byte DONE = 'D';
+
+    private final Path file;
+    private final Codec<T> codec;
+    private final Function<T, String> key;
+    private final Map<String, T> pending;
+    private final Set<String> done;
+    private final ByteArrayOutputStream buffer;
+    private final Object sync;
+    private final FileChannel channel;
+    private final ExecutorService syncer;
+    private final ScheduledFuture<?> syncTask;
+    private boolean closed;
+
+    /**
+     * Opens the journal which identifies queries by their encoded bytes
+     *
+     * @see #CheckpointJournal(Path, Codec, Function, long, TimeUnit)
+     */
+    public CheckpointJournal(Path file, Codec<T> codec, long syncInterval, TimeUnit unit) {
+        this(file, codec, q -> Base64.getEncoder().encodeToString(codec.encode(q)), syncInterval, unit);
+    }
+
+    /**
+     * Opens the journal in specified file and restores its state
+     *
+     * @param file         file of the journal
+     * @param codec        codec to write pending queries
+     * @param key          unique key of the query
+     * @param syncInterval interval between forcing records to the disk
+     * @param unit         unit of sync interval
+     */
+    public CheckpointJournal(
+        Path file, Codec<T> codec, Function<T, String> key, long syncInterval, TimeUnit unit
+    ) {
+        if (syncInterval < 1) {
+            throw new IllegalArgumentException("sync interval must be positive");
+        }
+        this.file = file;
+        this.codec = codec;
+        this.key = key;
+        this.pending = new LinkedHashMap<>();
+        this.done = new HashSet<>();
+        this.buffer = new ByteArrayOutputStream();
+        this.sync = new Object();
+        try {
+            long position = Files.exists(file) ? restore() : 0;
+            this.channel = FileChannel.open(
+                file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE
+            );
+            this.channel.truncate(position);
+            this.channel.position(position);
+        } catch (IOException e) {
+            throw new IllegalStateException("can't open journal " + file, e);
+        }
+        this.syncer = new ThreadPoolExecutor(
+            1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1), r -> {
+                Thread thread = new Thread(r, "jcp-journal");
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.DiscardPolicy()
+        );
+        this.syncTask = QueryExecutors.timer().scheduleWithFixedDelay(
+            () -> this.syncer.execute(() -> {
+                try {
+                    sync();
+                } catch (Throwable t) {
+                    t.printStackTrace();
+                }
+            }), syncInterval, syncInterval, unit
+        );
+    }
+
+    /**
+     * Records the query as started, does nothing if it's already pending
+     */
+    public synchronized void pending(T query) {
+        String k = this.key.apply(query);
+        if (!this.pending.containsKey(k)) {
+            append(PENDING, this.codec.encode(query));
+            this.pending.put(k, query);
+        }
+    }
+
+    /**
+     * Records the query as done, so it's never started again
+     */
+    public synchronized void done(T query) {
+        String k = this.key.apply(query);
+        if (this.done.add(k)) {
+            append(DONE, k.getBytes(StandardCharsets.UTF_8));
+            this.pending.remove(k);
+        }
+    }
+
+    public synchronized boolean isDone(T query) {
+        return this.done.contains(this.key.apply(query));
+    }
+
+    /**
+     * @return queries which were started but aren't done, in the order of start
+     */
+    public synchronized List<T> pending() {
+        return new ArrayList<>(this.pending.values());
+    }
+
+    public synchronized int countDone() {
+        return this.done.size();
+    }
+
+    /**
+     * Forces buffered records to the disk
+     */
+    public void sync() {
+        synchronized (this.sync) {
+            byte[] records;
+            synchronized (this) {
+                if (this.closed) {
+                    return;
+                }
+                records = this.buffer.toByteArray();
+                this.buffer.reset();
+            }
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(records);
+                while (buffer.hasRemaining()) {
+                    this.channel.write(buffer);
+                }
+                this.channel.force(false);
+            } catch (IOException e) {
+                throw new IllegalStateException("can't sync journal " + this.file, e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        this.syncTask.cancel(false);
+        this.syncer.shutdown();
+        synchronized (this.sync) {
+            sync();
+            synchronized (this) {
+                this.closed = true;
+            }
+            try {
+                this.channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void append(byte type, byte[] bytes) {
+        if (this.closed) {
+            throw new IllegalStateException("journal is closed");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(bytes);
+        ByteBuffer record = ByteBuffer.allocate(HEADER + bytes.length);
+        record.putInt(bytes.length).putInt((int) crc.getValue()).put(type).put(bytes);
+        this.buffer.write(record.array(), 0, record.capacity());
+    }
+
+    /**
+     * @return position after the last intact record
+     */
+    private long restore() throws IOException {
+        long position = 0;
+        long size = Files.size(this.file);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(this.file)))) {
+            while (true) {
+                int length = in.readInt();
+                int checksum = in.readInt();
+                byte type = in.readByte();
+                if (length < 0 || length > size - position - HEADER) {
+                    break;
+                }
+                byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                CRC32 crc = new CRC32();
+                crc.update(type);
+                crc.update(bytes);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                if (type == PENDING) {
+                    T query = this.codec.decode(bytes);
+                    String k = this.key.apply(query);
+                    if (!this.done.contains(k)) {
+                        this.pending.put(k, query);
+                    }
+                } else if (type == DONE) {
+                    String k = new String(bytes, StandardCharsets.UTF_8);
+                    this.done.add(k);
+                    this.pending.remove(k);
+                } else {
+                    break;
+                }
+                position += HEADER + length;
+            }
+        } catch (EOFException e) {
+            // journal ends with a torn record
+        }
+        return position;
+    }
+}
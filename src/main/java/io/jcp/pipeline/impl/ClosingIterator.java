@@ -0,0 +1,27 @@
+package io.jcp.pipeline.impl;
+
+import java.util.Iterator;
+
+/**
+ * Iterator which releases its source when consumer abandons it
+ *
+ * @param <T> is a type of item
+ */
+interface ClosingIterator<T> extends Iterator<T>, AutoCloseable {
+
+    /**
+     * Stops reading the source, does nothing by default
+     */
+    @Override
+    default void close() {
+    }
+
+    /**
+     * Closes the iterator if it holds a source
+     */
+    static void close(Iterator<?> iterator) {
+        if (iterator instanceof ClosingIterator) {
+            ((ClosingIterator<?>) iterator).close();
+        }
+    }
+}
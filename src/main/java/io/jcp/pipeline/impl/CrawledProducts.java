@@ -0,0 +1,309 @@
+package io.jcp.pipeline.impl;
+
+import io.jcp.pipeline.VisitedSet;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Fetches seed queries and every query discovered from their products
+ * <p>
+ * Crawl goes level by level: queries of the next depth are visited once
+ * every query of the current depth is fetched and fanned out, so each
+ * query is fetched at its minimum depth whatever branch answers first.
+ * Queries of the same level are fetched and fanned out on the executor
+ * in parallel. Queries deeper than the limit and queries already visited
+ * are skipped. Crawl is started on the first read, products are emitted
+ * while the crawl is still in progress and aren't kept, hence they can
+ * be read only once
+ *
+ * @param <T> is a type of query
+ * @param <H> is a type of product
+ */
+final class CrawledProducts<T, H> implements Products<H> {
+    private final Collection<T> seeds;
+    private final Function<T, CompletableFuture<Optional<H>>> fetch;
+    private final Function<H, Collection<T>> fanOut;
+    private final int maxDepth;
+    private final VisitedSet<T> visited;
+    private final Executor executor;
+    private final AtomicBoolean consumed;
+    private Consumer<CompletableFuture<Optional<H>>> sink;
+    private int pending;
+
+    CrawledProducts(
+        Collection<T> seeds,
+        Function<T, CompletableFuture<Optional<H>>> fetch,
+        Function<H, Collection<T>> fanOut,
+        int maxDepth,
+        VisitedSet<T> visited,
+        Executor executor
+    ) {
+        if (maxDepth < 0) {
+            throw new IllegalArgumentException("depth must not be negative");
+        }
+        this.seeds = seeds;
+        this.fetch = fetch;
+        this.fanOut = fanOut;
+        this.maxDepth = maxDepth;
+        this.visited = visited;
+        this.executor = executor;
+        this.consumed = new AtomicBoolean(false);
+    }
+
+    @Override
+    public List<Optional<H>> get() {
+        return Collections.unmodifiableList(ordered().collect(toList()));
+    }
+
+    /**
+     * @return products in the order queries were discovered
+     */
+    @Override
+    public Stream<Optional<H>> ordered() {
+        return stream(futures());
+    }
+
+    @Override
+    public Stream<Optional<H>> unordered() {
+        return stream(claim(false, Function.identity()));
+    }
+
+    /**
+     * @return futures in the order queries were discovered, iterator
+     * waits for the crawl when all discovered futures are taken
+     */
+    @Override
+    public Iterator<CompletableFuture<Optional<H>>> futures() {
+        return claim(true, Function.identity());
+    }
+
+    /**
+     * Starts the task for each product as soon as it's fetched, while
+     * the crawl is still in progress
+     */
+    @Override
+    public <K> Products<K> then(Function<Optional<H>, CompletableFuture<Optional<K>>> task) {
+        return new Stage<>(f -> f.thenCompose(task));
+    }
+
+    /**
+     * Starts the crawl which emits every discovered future to the iterator
+     *
+     * @param ordered true to emit futures in the order queries were
+     *                discovered, false to emit them as they complete
+     * @param map     maps future of the product to the emitted one
+     */
+    private <X> Iterator<CompletableFuture<Optional<X>>> claim(
+        boolean ordered, Function<CompletableFuture<Optional<H>>, CompletableFuture<Optional<X>>> map
+    ) {
+        if (!this.consumed.compareAndSet(false, true)) {
+            throw new IllegalStateException("crawled products can be read only once");
+        }
+        if (this.seeds.isEmpty()) {
+            throw new IllegalStateException(MaterializedProducts.AT_LEAST_ONE_QUERY_MUST_BE_SPECIFIED);
+        }
+        Deque<CompletableFuture<Optional<X>>> emitted = new ArrayDeque<>();
+        Consumer<CompletableFuture<Optional<X>>> emit = future -> {
+            synchronized (this) {
+                emitted.addLast(future);
+                this.pending--;
+                this.notifyAll();
+            }
+        };
+        synchronized (this) {
+            this.pending++;
+            this.sink = future -> {
+                CompletableFuture<Optional<X>> mapped = map.apply(future);
+                synchronized (this) {
+                    this.pending++;
+                }
+                if (ordered) {
+                    emit.accept(mapped);
+                } else {
+                    mapped.whenComplete((p, t) -> emit.accept(mapped));
+                }
+            };
+        }
+        new Level(0).start(this.seeds);
+        return new Iterator<CompletableFuture<Optional<X>>>() {
+            @Override
+            public boolean hasNext() {
+                synchronized (CrawledProducts.this) {
+                    while (emitted.isEmpty() && pending > 0) {
+                        try {
+                            CrawledProducts.this.wait();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new IllegalStateException("can't get products", e);
+                        }
+                    }
+                    return !emitted.isEmpty();
+                }
+            }
+
+            @Override
+            public CompletableFuture<Optional<X>> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                synchronized (CrawledProducts.this) {
+                    return emitted.pollFirst();
+                }
+            }
+        };
+    }
+
+    private synchronized void finish() {
+        if (--this.pending == 0) {
+            this.notifyAll();
+        }
+    }
+
+    private synchronized Consumer<CompletableFuture<Optional<H>>> sink() {
+        return this.sink;
+    }
+
+    private static <X> Stream<Optional<X>> stream(Iterator<CompletableFuture<Optional<X>>> futures) {
+        return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(futures, Spliterator.ORDERED), false
+        ).flatMap(MaterializedProducts::join);
+    }
+
+    /**
+     * Queries of the same depth, the next level is started once all of
+     * them are fetched and fanned out
+     */
+    private final class Level {
+        private final int depth;
+        private final Queue<T> discovered;
+        private final AtomicInteger running;
+
+        private Level(int depth) {
+            this.depth = depth;
+            this.discovered = new ConcurrentLinkedQueue<>();
+            this.running = new AtomicInteger(1);
+        }
+
+        private void start(Collection<T> queries) {
+            try {
+                queries.forEach(q -> {
+                    if (visited.add(q)) {
+                        this.running.incrementAndGet();
+                        visit(q);
+                    }
+                });
+            } finally {
+                arrive();
+            }
+        }
+
+        private void visit(T query) {
+            CompletableFuture<Optional<H>> future;
+            try {
+                future = fetch.apply(query);
+            } catch (Throwable t) {
+                future = new CompletableFuture<>();
+                future.completeExceptionally(t);
+            }
+            sink().accept(future);
+            future.whenComplete((p, t) -> {
+                if (t != null) {
+                    t.printStackTrace();
+                }
+                if (t == null && p.isPresent() && this.depth < maxDepth) {
+                    expand(p.get());
+                } else {
+                    arrive();
+                }
+            });
+        }
+
+        private void expand(H product) {
+            try {
+                executor.execute(() -> {
+                    try {
+                        this.discovered.addAll(fanOut.apply(product));
+                    } catch (Throwable t) {
+                        t.printStackTrace();
+                    } finally {
+                        arrive();
+                    }
+                });
+            } catch (Throwable t) {
+                t.printStackTrace();
+                arrive();
+            }
+        }
+
+        private void arrive() {
+            if (this.running.decrementAndGet() != 0) {
+                return;
+            }
+            if (this.discovered.isEmpty()) {
+                finish();
+            } else {
+                new Level(this.depth + 1).start(this.discovered);
+            }
+        }
+    }
+
+    /**
+     * Stage chained to the crawl, its tasks are started as products of
+     * the crawl are discovered
+     *
+     * @param <K> is a type of product
+     */
+    private final class Stage<K> implements Products<K> {
+        private final Function<CompletableFuture<Optional<H>>, CompletableFuture<Optional<K>>> map;
+
+        private Stage(Function<CompletableFuture<Optional<H>>, CompletableFuture<Optional<K>>> map) {
+            this.map = map;
+        }
+
+        @Override
+        public List<Optional<K>> get() {
+            return Collections.unmodifiableList(ordered().collect(toList()));
+        }
+
+        @Override
+        public Stream<Optional<K>> ordered() {
+            return stream(futures());
+        }
+
+        @Override
+        public Iterator<CompletableFuture<Optional<K>>> futures() {
+            return claim(true, this.map);
+        }
+
+        @Override
+        public Stream<Optional<K>> unordered() {
+            return stream(claim(false, this.map));
+        }
+
+        @Override
+        public <R> Products<R> then(Function<Optional<K>, CompletableFuture<Optional<R>>> task) {
+            return new Stage<>(this.map.andThen(f -> f.thenCompose(task)));
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package io.jcp.pipeline.impl;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.util.Collections.unmodifiableList;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Executes tasks of the pipeline stage as products are consumed
+ * <p>
+ * Tasks are read from the source one by one and at most {@code window}
+ * of them are in flight at the same time, so memory doesn't grow
+ * with the length of the source. Products aren't kept, hence they
+ * can be read only once. Closing the stream of products releases the source
+ *
+ * @param <H> is a type of product
+ */
+final class LazyProducts<H> implements Products<H> {
+    private final Supplier<Iterator<Supplier<CompletableFuture<Optional<H>>>>> tasks;
+    private final int window;
+    private final AtomicBoolean consumed;
+
+    LazyProducts(Supplier<Iterator<Supplier<CompletableFuture<Optional<H>>>>> tasks, int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException("window must be positive");
+        }
+        this.tasks = tasks;
+        this.window = window;
+        this.consumed = new AtomicBoolean(false);
+    }
+
+    @Override
+    public List<Optional<H>> get() {
+        return unmodifiableList(ordered().collect(toList()));
+    }
+
+    @Override
+    public Stream<Optional<H>> ordered() {
+        return stream(futures());
+    }
+
+    @Override
+    public Iterator<CompletableFuture<Optional<H>>> futures() {
+        Iterator<Supplier<CompletableFuture<Optional<H>>>> tasks = claim();
+        Queue<CompletableFuture<Optional<H>>> started = new ArrayDeque<>(this.window);
+        return new ClosingIterator<CompletableFuture<Optional<H>>>() {
+            @Override
+            public boolean hasNext() {
+                fill();
+                return !started.isEmpty();
+            }
+
+            @Override
+            public CompletableFuture<Optional<H>> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return started.poll();
+            }
+
+            private void fill() {
+                while (started.size() < window && tasks.hasNext()) {
+                    started.add(start(tasks.next()));
+                }
+            }
+
+            @Override
+            public void close() {
+                ClosingIterator.close(tasks);
+            }
+        };
+    }
+
+    @Override
+    public Stream<Optional<H>> unordered() {
+        Iterator<Supplier<CompletableFuture<Optional<H>>>> tasks = claim();
+        BlockingQueue<CompletableFuture<Optional<H>>> completed = new LinkedBlockingQueue<>();
+        return stream(new ClosingIterator<CompletableFuture<Optional<H>>>() {
+            private int inFlight;
+
+            @Override
+            public boolean hasNext() {
+                fill();
+                return this.inFlight > 0;
+            }
+
+            @Override
+            public CompletableFuture<Optional<H>> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                this.inFlight--;
+                return MaterializedProducts.take(completed);
+            }
+
+            private void fill() {
+                while (this.inFlight < window && tasks.hasNext()) {
+                    CompletableFuture<Optional<H>> future = start(tasks.next());
+                    this.inFlight++;
+                    future.whenComplete((p, t) -> completed.add(future));
+                }
+            }
+
+            @Override
+            public void close() {
+                ClosingIterator.close(tasks);
+            }
+        });
+    }
+
+    /**
+     * Starts the task for each product as soon as it's fetched. Products of
+     * this stage are started by the next one, so the window bounds both
+     */
+    @Override
+    public <K> Products<K> then(Function<Optional<H>, CompletableFuture<Optional<K>>> task) {
+        return new LazyProducts<>(() -> {
+            Iterator<Supplier<CompletableFuture<Optional<H>>>> tasks = claim();
+            return new ClosingIterator<Supplier<CompletableFuture<Optional<K>>>>() {
+                @Override
+                public boolean hasNext() {
+                    return tasks.hasNext();
+                }
+
+                @Override
+                public Supplier<CompletableFuture<Optional<K>>> next() {
+                    Supplier<CompletableFuture<Optional<H>>> product = tasks.next();
+                    return () -> start(product).thenCompose(task);
+                }
+
+                @Override
+                public void close() {
+                    ClosingIterator.close(tasks);
+                }
+            };
+        }, this.window);
+    }
+
+    private Iterator<Supplier<CompletableFuture<Optional<H>>>> claim() {
+        if (!this.consumed.compareAndSet(false, true)) {
+            throw new IllegalStateException("lazily submitted products can be read only once");
+        }
+        Iterator<Supplier<CompletableFuture<Optional<H>>>> tasks = this.tasks.get();
+        if (!tasks.hasNext()) {
+            throw new IllegalStateException(MaterializedProducts.AT_LEAST_ONE_QUERY_MUST_BE_SPECIFIED);
+        }
+        return tasks;
+    }
+
+    private static <H> CompletableFuture<Optional<H>> start(
+        Supplier<CompletableFuture<Optional<H>>> task
+    ) {
+        CompletableFuture<Optional<H>> future = task.get();
+        future.whenComplete((p, t) -> {
+            if (t != null) {
+                t.printStackTrace();
+            }
+        });
+        return future;
+    }
+
+    private static <H> Stream<Optional<H>> stream(Iterator<CompletableFuture<Optional<H>>> futures) {
+        return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(futures, Spliterator.ORDERED), false
+        ).onClose(() -> ClosingIterator.close(futures)).flatMap(MaterializedProducts::join);
+    }
+}
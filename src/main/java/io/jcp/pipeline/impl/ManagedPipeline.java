@@ -1,6 +1,12 @@
 package io.jcp.pipeline.impl;
 
+import io.jcp.executor.OverflowPolicy;
+import io.jcp.executor.QueryExecutors;
+import io.jcp.flow.Flow;
+import io.jcp.flow.FuturePublisher;
 import io.jcp.pipeline.Pipeline;
+import io.jcp.pipeline.VisitedSet;
+import io.jcp.pipeline.checkpoint.CheckpointJournal;
 import io.jcp.pipeline.callback.QueryCompleteCallback;
 import io.jcp.provider.Provider;
 import io.jcp.service.ConcurrentQueryExecutorService;
@@ -10,36 +16,62 @@ import io.jcp.service.impl.ManagedQueryExecutorService;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import static java.util.stream.Collectors.toList;
 
 public final class ManagedPipeline<T, H> implements Pipeline<T, H> {
-    private final ThreadPoolExecutor executor;
+    private final ExecutorService executor;
     private final ConcurrentQueryExecutorService<T, H> service;
     private final Pipeline<T, H> origin;
-    private final List<Callable<Optional<H>>> products;
+    private final Products<H> products;
+    private final Optional<Long> deadline;
 
     public ManagedPipeline(int threads, Provider<T, H> provider) {
-        this.executor = new ThreadPoolExecutor(
-            threads, threads, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>()
-        );
+        this(QueryExecutors.fixed(threads), provider);
+    }
+
+    /**
+     * Creates pipeline which runs queries on pool with bounded queue
+     *
+     * @param threads  number of threads
+     * @param capacity maximum number of queries waiting in the queue
+     * @param policy   what to do with the query when queue is full
+     * @param provider provider to fetch products
+     */
+    public ManagedPipeline(int threads, int capacity, OverflowPolicy policy, Provider<T, H> provider) {
+        this(QueryExecutors.fixed(threads, capacity, policy), provider);
+    }
+
+    /**
+     * Creates pipeline which runs queries on specified executor
+     *
+     * @param executor executor to run queries, e.g. {@link QueryExecutors#virtual(int)}
+     * @param provider provider to fetch products
+     */
+    public ManagedPipeline(ExecutorService executor, Provider<T, H> provider) {
+        this.executor = executor;
         this.service = new ManagedQueryExecutorService<>(
             executor, Collections.emptyList(), provider
         );
         this.origin = new QueryPipeline<T, H>().using(service);
-        this.products = Collections.emptyList();
+        this.products = MaterializedProducts.empty();
+        this.deadline = Optional.empty();
     }
 
     private ManagedPipeline(
-        ThreadPoolExecutor executor,
+        ExecutorService executor,
         ConcurrentQueryExecutorService<T, H> service,
         Pipeline<T, H> origin,
-        List<Callable<Optional<H>>> products
+        Products<H> products,
+        Optional<Long> deadline
     ) {
         this.executor = executor;
         this.service = service;
         this.origin = origin;
         this.products = products;
+        this.deadline = deadline;
     }
 
     @Override
@@ -56,34 +88,225 @@ public final class ManagedPipeline<T, H> implements Pipeline<T, H> {
 
     @Override
     public ManagedPipeline<T, H> run(Function<H, T> f) {
-        return new ManagedPipeline<>(
-            executor,
-            service,
-            origin,
-            products().stream().map(o -> (Callable<Optional<H>>) () ->
-                this.origin.run(f).product())
-                .collect(toList())
-        );
-
+        return wrap(origin, this.products.then(o -> start(() -> o.isPresent() ?
+            fetch(this.origin.run(f.apply(o.get()))) :
+            CompletableFuture.completedFuture(Optional.<H>empty()))));
     }
 
     public ManagedPipeline<T, H> run(Collection<T> query) {
-        return wrap(origin, query.stream()
-            .map(q -> (Callable<Optional<H>>) () -> this.origin.run(q).product())
-            .collect(toList()));
+        return wrap(origin, new MaterializedProducts<>(() -> query.stream()
+            .map(q -> start(() -> fetch(this.origin.run(q))))
+            .collect(toList())));
+    }
+
+    /**
+     * Runs queries which aren't done according to the journal
+     * <p>
+     * Every query is recorded in the journal as pending before it's started
+     * and as done once its product is fetched, failed queries and queries
+     * with empty product stay pending.
+     * Products of the queries done before aren't fetched again, hence they
+     * are not in the stage
+     *
+     * @param queries queries of the job
+     * @param journal journal of the job
+     * @return pipeline with products of the queries which weren't done
+     */
+    public ManagedPipeline<T, H> run(Collection<T> queries, CheckpointJournal<T> journal) {
+        if (queries.isEmpty()) {
+            throw new IllegalStateException(MaterializedProducts.AT_LEAST_ONE_QUERY_MUST_BE_SPECIFIED);
+        }
+        return checkpointed(() -> queries, journal);
+    }
+
+    /**
+     * Runs queries which were started but weren't done before the crash
+     *
+     * @param journal journal of the job
+     * @return pipeline with products of pending queries, which may be empty
+     * @see #run(Collection, CheckpointJournal)
+     */
+    public ManagedPipeline<T, H> resume(CheckpointJournal<T> journal) {
+        return checkpointed(journal::pending, journal);
+    }
+
+    /**
+     * Runs queries which are read from the source as products are consumed
+     * <p>
+     * At most {@code window} queries are in flight at the same time, so
+     * arbitrarily long source is processed in constant memory. Products
+     * of such stage and of the stages chained to it can be read only once
+     *
+     * @param queries source of queries
+     * @param window  maximum number of queries in flight
+     * @return pipeline with lazily submitted queries
+     */
+    public ManagedPipeline<T, H> run(Iterator<T> queries, int window) {
+        return lazily(() -> queries, window);
+    }
+
+    /**
+     * @see #run(Iterator, int)
+     */
+    public ManagedPipeline<T, H> run(Stream<T> queries, int window) {
+        return run(queries.iterator(), window);
+    }
+
+    /**
+     * Runs queries which are requested from the publisher as products are consumed
+     * <p>
+     * Publisher is subscribed on the first read and is asked for the next
+     * query only when there are less than {@code window} queries in flight.
+     * Closing the stream of products or cancelling the subscription to them
+     * cancels the subscription to the publisher
+     *
+     * @param queries publisher of queries
+     * @param window  maximum number of queries in flight
+     * @return pipeline with lazily submitted queries
+     * @see #run(Iterator, int)
+     */
+    public ManagedPipeline<T, H> run(Flow.Publisher<T> queries, int window) {
+        return lazily(() -> new PublisherIterator<>(queries), window);
+    }
+
+    /**
+     * Crawls the graph of queries starting from the seeds
+     * <p>
+     * Every product is fanned out into new queries, which are fetched
+     * until {@code maxDepth} is reached. Each query is fetched once
+     *
+     * @param seeds    queries of depth zero
+     * @param fanOut   discovers next queries from the product
+     * @param maxDepth maximum depth of the fetched queries
+     * @return pipeline with products of all crawled queries
+     * @see #crawl(Collection, Function, int, VisitedSet)
+     */
+    public ManagedPipeline<T, H> crawl(
+        Collection<T> seeds, Function<H, Collection<T>> fanOut, int maxDepth
+    ) {
+        return crawl(seeds, fanOut, maxDepth, VisitedSet.concurrent());
+    }
+
+    /**
+     * Crawls the graph of queries starting from the seeds
+     * <p>
+     * Products are fanned out on the common {@link ForkJoinPool} as soon as
+     * they are fetched, while discovered queries are fetched the same way
+     * as the queries of {@link #run(Collection)}. Queries of the next depth
+     * are visited once the current depth is crawled, so each query is
+     * fetched at its minimum depth. Products of the stage are ordered by
+     * discovery of their queries, they aren't kept, hence products of such
+     * stage and of the stages chained to it can be read only once
+     *
+     * @param seeds    queries of depth zero
+     * @param fanOut   discovers next queries from the product
+     * @param maxDepth maximum depth of the fetched queries
+     * @param visited  set of the queries which are already crawled
+     * @return pipeline with products of all crawled queries
+     * @see #crawl(Collection, Function, int, VisitedSet, Executor)
+     */
+    public ManagedPipeline<T, H> crawl(
+        Collection<T> seeds,
+        Function<H, Collection<T>> fanOut,
+        int maxDepth,
+        VisitedSet<T> visited
+    ) {
+        return crawl(seeds, fanOut, maxDepth, visited, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Crawls the graph of queries starting from the seeds, products are
+     * fanned out on the specified executor
+     * <p>
+     * Executor of the fan out is not the one of the fetches, so slow
+     * {@code fanOut} doesn't hold threads needed to fetch the queries
+     *
+     * @param seeds    queries of depth zero
+     * @param fanOut   discovers next queries from the product
+     * @param maxDepth maximum depth of the fetched queries
+     * @param visited  set of the queries which are already crawled
+     * @param executor executor to fan out the products on
+     * @return pipeline with products of all crawled queries
+     */
+    public ManagedPipeline<T, H> crawl(
+        Collection<T> seeds,
+        Function<H, Collection<T>> fanOut,
+        int maxDepth,
+        VisitedSet<T> visited,
+        Executor executor
+    ) {
+        return wrap(origin, new CrawledProducts<>(
+            seeds,
+            q -> start(() -> fetch(this.origin.run(q))),
+            fanOut,
+            maxDepth,
+            visited,
+            executor
+        ));
     }
 
     @Override
     public <R, K> ManagedPipeline<R, K> run(
         Function<H, R> function, Pipeline<R, K> underlying
+    ) {
+        return run(function, underlying, this.executor);
+    }
+
+    /**
+     * Runs the next stage on its own executor
+     * <p>
+     * Threads of the stage are not shared with the other stages, so slow
+     * stage doesn't hold threads needed by the fast one. Stage with bounded
+     * queue, e.g. {@link QueryExecutors#fixed(int, int, OverflowPolicy)},
+     * blocks or drops products of the previous stage when it's full.
+     * Stages chained to the returned pipeline run on the same executor
+     * unless they are given their own
+     *
+     * @param function   maps product to the query of the next stage
+     * @param underlying pipeline to fetch the query of the next stage
+     * @param executor   executor to run the next stage on
+     * @return pipeline with products of the next stage
+     * @see #countQueued()
+     */
+    public <R, K> ManagedPipeline<R, K> run(
+        Function<H, R> function, Pipeline<R, K> underlying, ExecutorService executor
     ) {
         return new ManagedPipeline<>(
             executor,
             null,
             underlying,
-            products().stream().map(o -> (Callable<Optional<K>>) () ->
-                underlying.run(function.apply(o.get())).product())
-                .collect(toList())
+            this.products.then(o -> offload(() -> o.isPresent() ?
+                fetch(underlying.run(function.apply(o.get()))) :
+                CompletableFuture.completedFuture(Optional.<K>empty()), executor)),
+            this.deadline
+        );
+    }
+
+    /**
+     * Bounds the time of queries which are run by this pipeline
+     * and by the stages chained to it
+     * <p>
+     * Deadline is counted from this call, not from the moment products are
+     * read, and must be set before the stage is run, since queries of
+     * the stage which is already run are bound to the deadline they were
+     * run with. Queries which aren't done by the deadline are cancelled,
+     * blocking fetches are interrupted, and their products are dropped
+     * from the stage
+     *
+     * @param timeout time left to queries
+     * @param unit    unit of timeout
+     * @return pipeline with deadline
+     * @throws IllegalStateException if the pipeline already has a stage
+     */
+    public ManagedPipeline<T, H> within(long timeout, TimeUnit unit) {
+        if (this.products != MaterializedProducts.<H>empty()) {
+            throw new IllegalStateException(
+                "can't bound time of the stage which is already run, call within before run"
+            );
+        }
+        return new ManagedPipeline<>(
+            this.executor, this.service, this.origin, this.products,
+            Optional.of(QueryExecutors.deadline(timeout, unit))
         );
     }
 
@@ -96,29 +319,57 @@ public final class ManagedPipeline<T, H> implements Pipeline<T, H> {
 
     @Override
     public Optional<H> product() {
-        return this.products().isEmpty() ?
-            Optional.empty() : this.products().iterator().next();
+        List<Optional<H>> products = this.products();
+        return products.isEmpty() ?
+            Optional.empty() : products.iterator().next();
     }
 
     public List<Optional<H>> products() {
-        if (this.products.isEmpty()) {
-            throw new IllegalStateException("at least one query must be specified");
-        }
-        List<Optional<H>> result = new ArrayList<>();
-        try {
-            executor.invokeAll(
-                products
-            ).forEach(f -> {
-                try {
-                    result.add(f.get());
-                } catch (InterruptedException | ExecutionException e) {
-                    e.printStackTrace();
-                }
-            });
-        } catch (InterruptedException e) {
-            throw new IllegalStateException("can't get products", e);
-        }
-        return result;
+        return this.products.get();
+    }
+
+    /**
+     * Publishes products in the order of queries
+     * <p>
+     * Products are taken from the stage on demand of the subscriber. Queries
+     * of lazily submitted stage are started only as products are requested,
+     * so slow subscriber throttles fetching, see {@link #run(Iterator, int)}
+     *
+     * @param executor executor to take next products on, taking products
+     *                 of lazily submitted stage may block until a query is started
+     * @return publisher of products
+     */
+    @Override
+    public Flow.Publisher<Optional<H>> publisher(Executor executor) {
+        return new FuturePublisher<>(this.products::futures, executor);
+    }
+
+    /**
+     * Streams products in the order of queries
+     * <p>
+     * Each product is emitted as soon as it and all preceding products
+     * are fetched, so consumer doesn't wait for the whole stage
+     *
+     * @return lazy {@link java.util.stream.Stream} of products
+     */
+    public Stream<Optional<H>> stream() {
+        return this.products.ordered();
+    }
+
+    /**
+     * Streams products in the order of completion
+     *
+     * @return lazy {@link java.util.stream.Stream} of products
+     */
+    public Stream<Optional<H>> unorderedStream() {
+        return this.products.unordered();
+    }
+
+    /**
+     * @return number of queries of this stage which wait for a thread
+     */
+    public long countQueued() {
+        return QueryExecutors.countQueued(this.executor);
     }
 
     private ManagedPipeline<T, H> shutdown() {
@@ -127,16 +378,91 @@ public final class ManagedPipeline<T, H> implements Pipeline<T, H> {
         return this;
     }
 
-    private ManagedPipeline<T, H> wrap(
-        Pipeline<T, H> origin, List<Callable<Optional<H>>> ps
+    /**
+     * Starts the task on the current thread if it's backed by managed service,
+     * which never blocks on fetch, otherwise offloads it to the pool.
+     * Current thread is either the caller, or the thread which fetched the
+     * product of the previous stage. Queries aren't submitted to the pool
+     * twice, and threads of the pool with full bounded queue run the query
+     * by themselves, so the pool can't deadlock on chained stages
+     */
+    private <K> CompletableFuture<Optional<K>> start(
+        Supplier<CompletableFuture<Optional<K>>> task
     ) {
-        return new ManagedPipeline<>(
-            this.executor, this.service, origin, ps
-        );
+        return this.service != null ? task.get() : offload(task);
+    }
+
+    /**
+     * Starts the task in the pool, so synchronous pipelines are executed
+     * in parallel, while asynchronous ones release the thread right after
+     * the fetch is initiated
+     */
+    private <K> CompletableFuture<Optional<K>> offload(
+        Supplier<CompletableFuture<Optional<K>>> task
+    ) {
+        return offload(task, this.executor);
+    }
+
+    private <K> CompletableFuture<Optional<K>> offload(
+        Supplier<CompletableFuture<Optional<K>>> task, ExecutorService executor
+    ) {
+        CompletableFuture<CompletableFuture<Optional<K>>> started = QueryExecutors.submit(task, executor);
+        if (this.deadline.isPresent()) {
+            QueryExecutors.within(started, this.deadline.get());
+        }
+        return started.thenCompose(Function.identity());
+    }
+
+    private ManagedPipeline<T, H> checkpointed(
+        Supplier<Collection<T>> queries, CheckpointJournal<T> journal
+    ) {
+        return wrap(origin, new MaterializedProducts<>(() -> queries.get().stream()
+            .filter(q -> !journal.isDone(q))
+            .map(q -> {
+                journal.pending(q);
+                return start(() -> fetch(this.origin.run(q))).whenComplete((p, t) -> {
+                    if (t == null && p.isPresent()) {
+                        journal.done(q);
+                    }
+                });
+            })
+            .collect(toList()), false));
+    }
+
+    private <K> CompletableFuture<Optional<K>> fetch(Pipeline<?, K> pipeline) {
+        return this.deadline.isPresent() ?
+            pipeline.productAsync(this.deadline.get()) : pipeline.productAsync();
+    }
+
+    private ManagedPipeline<T, H> lazily(Supplier<Iterator<T>> source, int window) {
+        return wrap(origin, new LazyProducts<>(() -> {
+            Iterator<T> queries = source.get();
+            return new ClosingIterator<Supplier<CompletableFuture<Optional<H>>>>() {
+                @Override
+                public boolean hasNext() {
+                    return queries.hasNext();
+                }
+
+                @Override
+                public Supplier<CompletableFuture<Optional<H>>> next() {
+                    T query = queries.next();
+                    return () -> start(() -> fetch(origin.run(query)));
+                }
+
+                @Override
+                public void close() {
+                    ClosingIterator.close(queries);
+                }
+            };
+        }, window));
+    }
+
+    private ManagedPipeline<T, H> wrap(Pipeline<T, H> origin, Products<H> products) {
+        return new ManagedPipeline<>(this.executor, this.service, origin, products, this.deadline);
     }
 
     private ManagedPipeline<T, H> wrap(Pipeline<T, H> origin) {
-        return wrap(origin, Collections.emptyList());
+        return wrap(origin, MaterializedProducts.empty());
     }
 
 }
@@ -0,0 +1,126 @@
+package io.jcp.pipeline.impl;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Executes tasks of the pipeline stage at most once and keeps
+ * the products for all subsequent reads
+ * <p>
+ * Tasks are started on the first read, products may be consumed
+ * either in the query order or in the order of completion
+ *
+ * @param <H> is a type of product
+ */
+final class MaterializedProducts<H> implements Products<H> {
+    static final String AT_LEAST_ONE_QUERY_MUST_BE_SPECIFIED = "at least one query must be specified";
+    private static final MaterializedProducts<Object> EMPTY =
+        new MaterializedProducts<>(Collections::<CompletableFuture<Optional<Object>>>emptyList);
+
+    private final Supplier<List<CompletableFuture<Optional<H>>>> tasks;
+    private final boolean required;
+    private List<CompletableFuture<Optional<H>>> futures;
+
+    MaterializedProducts(Supplier<List<CompletableFuture<Optional<H>>>> tasks) {
+        this(tasks, true);
+    }
+
+    /**
+     * @param required if false, stage is allowed to have no tasks
+     */
+    MaterializedProducts(Supplier<List<CompletableFuture<Optional<H>>>> tasks, boolean required) {
+        this.tasks = tasks;
+        this.required = required;
+    }
+
+    /**
+     * @return products of the pipeline which has no stage yet
+     */
+    @SuppressWarnings("unchecked")
+    static <H> MaterializedProducts<H> empty() {
+        return (MaterializedProducts<H>) EMPTY;
+    }
+
+    @Override
+    public List<Optional<H>> get() {
+        return Collections.unmodifiableList(ordered().collect(toList()));
+    }
+
+    @Override
+    public Stream<Optional<H>> ordered() {
+        return started().stream().flatMap(MaterializedProducts::join);
+    }
+
+    @Override
+    public Stream<Optional<H>> unordered() {
+        List<CompletableFuture<Optional<H>>> futures = started();
+        BlockingQueue<CompletableFuture<Optional<H>>> completed = new LinkedBlockingQueue<>();
+        futures.forEach(f -> f.whenComplete((p, t) -> completed.add(f)));
+        return IntStream.range(0, futures.size())
+            .mapToObj(i -> take(completed))
+            .flatMap(MaterializedProducts::join);
+    }
+
+    /**
+     * Starts the task for each product as soon as it's fetched, so neither
+     * the caller nor threads of the pool wait for the stage. Failed products
+     * are not passed to the task, the next stage fails for them as well
+     */
+    @Override
+    public <K> Products<K> then(Function<Optional<H>, CompletableFuture<Optional<K>>> task) {
+        return new MaterializedProducts<>(() -> started().stream()
+            .map(f -> f.thenCompose(task))
+            .collect(toList()), this.required);
+    }
+
+    @Override
+    public Iterator<CompletableFuture<Optional<H>>> futures() {
+        return started().iterator();
+    }
+
+    private synchronized List<CompletableFuture<Optional<H>>> started() {
+        if (this.futures == null) {
+            List<CompletableFuture<Optional<H>>> started = this.tasks.get();
+            if (started.isEmpty() && this.required) {
+                throw new IllegalStateException(AT_LEAST_ONE_QUERY_MUST_BE_SPECIFIED);
+            }
+            started.forEach(f -> f.whenComplete((p, t) -> {
+                if (t != null) {
+                    t.printStackTrace();
+                }
+            }));
+            this.futures = Collections.unmodifiableList(started);
+        }
+        return this.futures;
+    }
+
+    static <H> CompletableFuture<Optional<H>> take(
+        BlockingQueue<CompletableFuture<Optional<H>>> completed
+    ) {
+        try {
+            return completed.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("can't get products", e);
+        }
+    }
+
+    static <H> Stream<Optional<H>> join(CompletableFuture<Optional<H>> future) {
+        try {
+            return Stream.of(future.join());
+        } catch (RuntimeException e) {
+            return Stream.empty();
+        }
+    }
+}
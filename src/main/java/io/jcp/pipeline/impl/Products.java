@@ -0,0 +1,42 @@
+package io.jcp.pipeline.impl;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Products of the pipeline stage
+ *
+ * @param <H> is a type of product
+ */
+interface Products<H> {
+    List<Optional<H>> get();
+
+    /**
+     * @return products in the query order
+     */
+    Stream<Optional<H>> ordered();
+
+    /**
+     * @return futures of products in the query order, lazily submitted
+     * stages start their tasks as futures are taken
+     */
+    Iterator<CompletableFuture<Optional<H>>> futures();
+
+    /**
+     * @return products in the order of completion
+     */
+    Stream<Optional<H>> unordered();
+
+    /**
+     * Creates next stage which starts specified task for every product
+     * of this one
+     *
+     * @param task starts fetch of the next product
+     * @return products of the next stage
+     */
+    <K> Products<K> then(Function<Optional<H>, CompletableFuture<Optional<K>>> task);
+}
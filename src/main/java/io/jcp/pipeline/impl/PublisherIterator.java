@@ -0,0 +1,103 @@
+package io.jcp.pipeline.impl;
+
+import io.jcp.flow.Flow;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Reads items of the publisher as iterator
+ * <p>
+ * Publisher is asked for the next item only when iterator is asked whether
+ * it has one, so items are not read ahead of the consumer. Iterator waits
+ * for the publisher while item is requested. Closing the iterator
+ * cancels the subscription
+ *
+ * @param <T> is a type of item
+ */
+final class PublisherIterator<T> implements ClosingIterator<T>, Flow.Subscriber<T> {
+    private static final Object COMPLETE = new Object();
+
+    private final BlockingQueue<Object> items;
+    private final CompletableFuture<Flow.Subscription> subscription;
+    private Object next;
+    private volatile Throwable error;
+    private volatile boolean closed;
+
+    PublisherIterator(Flow.Publisher<T> publisher) {
+        this.items = new LinkedBlockingQueue<>();
+        this.subscription = new CompletableFuture<>();
+        publisher.subscribe(this);
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (!this.subscription.complete(subscription) || this.closed) {
+            subscription.cancel();
+        }
+    }
+
+    @Override
+    public void onNext(T item) {
+        this.items.add(item);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        this.error = throwable;
+        this.items.add(COMPLETE);
+    }
+
+    @Override
+    public void onComplete() {
+        this.items.add(COMPLETE);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (this.closed) {
+            return false;
+        }
+        if (this.next == null) {
+            try {
+                this.subscription.get().request(1);
+                this.next = this.items.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("can't get queries", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("can't get queries", e);
+            }
+        }
+        if (this.next == COMPLETE) {
+            if (this.error != null) {
+                throw new IllegalStateException("can't get queries", this.error);
+            }
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        T item = (T) this.next;
+        this.next = null;
+        return item;
+    }
+
+    @Override
+    public void close() {
+        this.closed = true;
+        Flow.Subscription subscription = this.subscription.getNow(null);
+        if (subscription != null) {
+            subscription.cancel();
+        }
+    }
+}
@@ -5,6 +5,9 @@ import io.jcp.pipeline.callback.QueryCompleteCallback;
 import io.jcp.service.QueryExecutorService;
 
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Function;
 
 public final class QueryPipeline<T, H> implements Pipeline<T, H> {
@@ -41,22 +44,7 @@ public final class QueryPipeline<T, H> implements Pipeline<T, H> {
     @Override
     public Pipeline<T, H> run(T query) {
         return new QueryPipeline<>(
-            Optional.of(q -> {
-                if (!service.isPresent()) {
-                    throw new IllegalStateException(
-                        USING_DIRECTIVE_MUST_BE_FIRST_DEFINED
-                    );
-                }
-                Optional<H> exec = service.get().exec(q);
-                H r = null;
-                if (exec.isPresent()) {
-                    r = exec.get();
-                }
-                if (callback.isPresent()) {
-                    callback.get().onComplete(query, exec);
-                }
-                return r;
-            }),
+            Optional.of(q -> fetch(q).orElse(null)),
             Optional.of(query),
             service,
             callback
@@ -124,4 +112,57 @@ public final class QueryPipeline<T, H> implements Pipeline<T, H> {
             this.function.get().apply(this.query.get())
         );
     }
+
+    @Override
+    public CompletableFuture<Optional<H>> productAsync() {
+        return productAsync(q -> service().execAsync(q));
+    }
+
+    /**
+     * Callback is notified with empty product if deadline is exceeded
+     */
+    @Override
+    public CompletableFuture<Optional<H>> productAsync(long deadline) {
+        return productAsync(q -> service().execAsync(q, deadline));
+    }
+
+    private CompletableFuture<Optional<H>> productAsync(
+        Function<T, CompletableFuture<Optional<H>>> exec
+    ) {
+        if (!this.query.isPresent()) {
+            throw new IllegalStateException(AT_LEAST_ONE_QUERY_MUST_BE_SPECIFIED);
+        }
+        T query = this.query.get();
+        return exec.apply(query).handle((product, t) -> {
+            if (t == null) {
+                complete(query, product);
+                return product;
+            }
+            if (t instanceof TimeoutException || t.getCause() instanceof TimeoutException) {
+                complete(query, Optional.empty());
+            }
+            throw t instanceof CompletionException ? (CompletionException) t : new CompletionException(t);
+        });
+    }
+
+    private Optional<H> fetch(T query) {
+        Optional<H> product = service().exec(query);
+        complete(query, product);
+        return product;
+    }
+
+    private void complete(T query, Optional<H> product) {
+        if (this.callback.isPresent()) {
+            this.callback.get().onComplete(query, product);
+        }
+    }
+
+    private QueryExecutorService<T, H> service() {
+        if (!this.service.isPresent()) {
+            throw new IllegalStateException(
+                USING_DIRECTIVE_MUST_BE_FIRST_DEFINED
+            );
+        }
+        return this.service.get();
+    }
 }
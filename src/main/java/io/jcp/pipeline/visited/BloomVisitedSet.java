@@ -0,0 +1,166 @@
+package io.jcp.pipeline.visited;
+
+import io.jcp.codec.Codec;
+import io.jcp.pipeline.VisitedSet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Visited set which keeps a few bits per query instead of the queries
+ * <p>
+ * Bloom filter never forgets the visited query, but with the configured
+ * probability it treats the new query as visited, so such query is skipped.
+ * E.g. 1% of false positives costs about 10 bits per query regardless of
+ * its size. Bits are set without locks, hence the same query added
+ * concurrently by two threads may be admitted twice
+ *
+ * @param <T> is a type of query
+ */
+public final class BloomVisitedSet<T> implements VisitedSet<T> {
+    private static final int MAGIC = 0x6a63_7062;
+
+    private final Codec<T> codec;
+    private final AtomicLongArray words;
+    private final long bits;
+    private final int hashes;
+
+    /**
+     * @param expectedQueries   number of queries the set is sized for
+     * @param falsePositiveRate probability to skip new query after
+     *                          {@code expectedQueries} were added, e.g. 0.01
+     * @param codec             codec to get bytes of the query
+     */
+    public BloomVisitedSet(long expectedQueries, double falsePositiveRate, Codec<T> codec) {
+        if (expectedQueries < 1 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException(
+                "expected queries must be positive and false positive rate must be in (0, 1)"
+            );
+        }
+        double bits = Math.ceil(-expectedQueries * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        if (bits > (double) Integer.MAX_VALUE * Long.SIZE) {
+            throw new IllegalArgumentException("visited set is too large");
+        }
+        int words = (int) (((long) bits + Long.SIZE - 1) / Long.SIZE);
+        this.codec = codec;
+        this.words = new AtomicLongArray(words);
+        this.bits = (long) words * Long.SIZE;
+        this.hashes = (int) Math.max(1, Math.round(this.bits / (double) expectedQueries * Math.log(2)));
+    }
+
+    private BloomVisitedSet(Codec<T> codec, AtomicLongArray words, int hashes) {
+        this.codec = codec;
+        this.words = words;
+        this.bits = (long) words.length() * Long.SIZE;
+        this.hashes = hashes;
+    }
+
+    /**
+     * Loads the set saved by {@link #save(Path)}
+     *
+     * @param file  file with the set
+     * @param codec codec to get bytes of the query
+     * @return set with all queries which were visited before saving
+     */
+    public static <T> BloomVisitedSet<T> load(Path file, Codec<T> codec) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IllegalStateException("can't load visited set from " + file + ", unknown format");
+            }
+            int hashes = in.readInt();
+            AtomicLongArray words = new AtomicLongArray(in.readInt());
+            for (int i = 0; i < words.length(); i++) {
+                words.set(i, in.readLong());
+            }
+            return new BloomVisitedSet<>(codec, words, hashes);
+        } catch (IOException e) {
+            throw new IllegalStateException("can't load visited set from " + file, e);
+        }
+    }
+
+    @Override
+    public boolean add(T query) {
+        long hash = hash(this.codec.encode(query));
+        long h1 = mix(hash);
+        long h2 = mix(hash ^ 0x9e37_79b9_7f4a_7c15L) | 1;
+        boolean added = false;
+        for (int i = 0; i < this.hashes; i++) {
+            long bit = Long.remainderUnsigned(h1 + i * h2, this.bits);
+            added |= set((int) (bit >>> 6), 1L << bit);
+        }
+        return added;
+    }
+
+    /**
+     * @param query query to check
+     * @return true if query was visited or, with the configured probability, if it wasn't
+     */
+    public boolean contains(T query) {
+        long hash = hash(this.codec.encode(query));
+        long h1 = mix(hash);
+        long h2 = mix(hash ^ 0x9e37_79b9_7f4a_7c15L) | 1;
+        for (int i = 0; i < this.hashes; i++) {
+            long bit = Long.remainderUnsigned(h1 + i * h2, this.bits);
+            if ((this.words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the set to the file, queries added concurrently may be missed
+     *
+     * @param file file to write the set to
+     */
+    public void save(Path file) {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(this.hashes);
+            out.writeInt(this.words.length());
+            for (int i = 0; i < this.words.length(); i++) {
+                out.writeLong(this.words.get(i));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("can't save visited set to " + file, e);
+        }
+    }
+
+    /**
+     * @return memory taken by the bits of the set
+     */
+    public long sizeInBytes() {
+        return this.bits / Byte.SIZE;
+    }
+
+    private boolean set(int word, long mask) {
+        long current;
+        do {
+            current = this.words.get(word);
+            if ((current & mask) != 0) {
+                return false;
+            }
+        } while (!this.words.compareAndSet(word, current, current | mask));
+        return true;
+    }
+
+    private static long hash(byte[] bytes) {
+        long hash = 0xcbf2_9ce4_8422_2325L;
+        for (byte b : bytes) {
+            hash = (hash ^ (b & 0xff)) * 0x100_0000_01b3L;
+        }
+        return hash;
+    }
+
+    private static long mix(long hash) {
+        hash = (hash ^ (hash >>> 33)) * 0xff51_afd7_ed55_8ccdL;
+        hash = (hash ^ (hash >>> 33)) * 0xc4ce_b9fe_1a85_ec53L;
+        return hash ^ (hash >>> 33);
+    }
+}
@@ -0,0 +1,53 @@
+package io.jcp.provider;
+
+import io.jcp.executor.QueryExecutors;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Non-blocking {@link Provider} which doesn't hold a thread
+ * while product is being fetched
+ *
+ * @param <T> is a type of query
+ * @param <H> is a type of product
+ */
+@FunctionalInterface
+public interface AsyncProvider<T, H> extends Provider<T, H> {
+    /**
+     * Starts execution of specified query
+     *
+     * @param query query to execute
+     * @return {@link java.util.concurrent.CompletableFuture} which completes with
+     * {@link java.util.Optional#empty} if something went wrong,
+     * {@link java.util.Optional} of object of type {@link H} if fetch was successful
+     */
+    CompletableFuture<Optional<H>> fetchAsync(T query);
+
+    /**
+     * Executes specified query and waits for the product
+     *
+     * @param query query to execute
+     * @return product of the query
+     */
+    @Override
+    default Optional<H> fetch(T query) {
+        return fetchAsync(query).join();
+    }
+
+    /**
+     * Adapts specified provider to asynchronous one
+     *
+     * @param provider provider to adapt
+     * @param executor executor to run blocking fetches on
+     * @return the provider itself if it's asynchronous already, otherwise
+     * provider which executes blocking fetches via specified executor
+     */
+    static <T, H> AsyncProvider<T, H> of(Provider<T, H> provider, Executor executor) {
+        if (provider instanceof AsyncProvider) {
+            return (AsyncProvider<T, H>) provider;
+        }
+        return query -> QueryExecutors.submit(() -> provider.fetch(query), executor);
+    }
+}
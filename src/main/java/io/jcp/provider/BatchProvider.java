@@ -0,0 +1,29 @@
+package io.jcp.provider;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * {@link Provider} which is able to execute several queries at once,
+ * e.g. via bulk endpoint of the back end
+ *
+ * @param <T> is a type of query
+ * @param <H> is a type of product
+ */
+@FunctionalInterface
+public interface BatchProvider<T, H> extends Provider<T, H> {
+    /**
+     * Executes specified queries and produces products
+     *
+     * @param queries queries to execute
+     * @return products in the same order as queries, {@link java.util.Optional#empty}
+     * for every query which is failed
+     */
+    List<Optional<H>> fetchAll(List<T> queries);
+
+    @Override
+    default Optional<H> fetch(T query) {
+        return fetchAll(Collections.singletonList(query)).get(0);
+    }
+}
@@ -0,0 +1,55 @@
+package io.jcp.provider.http;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Pool of direct buffers of the same size
+ * <p>
+ * Direct buffers are expensive to allocate and are freed only by GC,
+ * so they are taken from the pool for a single read or write and are
+ * returned right after it. At most {@code capacity} buffers are kept,
+ * buffers returned above it are left to GC
+ */
+final class BufferPool {
+    private final int bufferSize;
+    private final int capacity;
+    private final Deque<ByteBuffer> buffers;
+    private long allocated;
+
+    BufferPool(int bufferSize, int capacity) {
+        if (bufferSize < 1 || capacity < 0) {
+            throw new IllegalArgumentException("buffer size must be positive and capacity must not be negative");
+        }
+        this.bufferSize = bufferSize;
+        this.capacity = capacity;
+        this.buffers = new ArrayDeque<>();
+    }
+
+    /**
+     * @return cleared buffer
+     */
+    synchronized ByteBuffer acquire() {
+        ByteBuffer buffer = this.buffers.pollFirst();
+        if (buffer == null) {
+            this.allocated++;
+            return ByteBuffer.allocateDirect(this.bufferSize);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    synchronized void release(ByteBuffer buffer) {
+        if (this.buffers.size() < this.capacity) {
+            this.buffers.addFirst(buffer);
+        }
+    }
+
+    /**
+     * @return number of buffers allocated since the pool was created
+     */
+    synchronized long countAllocated() {
+        return this.allocated;
+    }
+}
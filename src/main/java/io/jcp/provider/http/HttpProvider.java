@@ -0,0 +1,616 @@
+package io.jcp.provider.http;
+
+import io.jcp.executor.QueryExecutors;
+import io.jcp.provider.AsyncProvider;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Non-blocking HTTP/1.1 provider which keeps connections alive
+ * <p>
+ * All connections are served by a single selector thread. Connections are
+ * pooled per host and are reused by subsequent requests, so TCP handshake
+ * is paid once per connection instead of once per fetch. Request goes to an
+ * idle connection first, then to a new connection while there are less than
+ * {@code connectionsPerHost} of them, and then is pipelined to the least
+ * loaded connection, up to {@code pipelineDepth} requests in flight. Only
+ * idempotent requests are pipelined. Reads and writes go through pooled
+ * direct buffers, pipelined requests are written by a single system call.
+ * <p>
+ * Idempotent request is sent once again if the connection is closed before
+ * its response, e.g. when server dropped the idle connection. Products are
+ * completed on the executor, so the selector thread never runs callbacks.
+ * Host names are resolved on the executor as well, hosts without connections
+ * and waiting requests are forgotten, so they are resolved again when
+ * requested next time. Only plain http is supported
+ */
+public final class HttpProvider implements AsyncProvider<HttpRequest, HttpResponse>, Closeable {
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_POOLED_BUFFERS = 64;
+    private static final int MAX_RETRIES = 1;
+    private static final long SWEEP_INTERVAL_MS = 1000;
+    private static final long IDLE_TIMEOUT = TimeUnit.SECONDS.toNanos(30);
+
+    private final int connectionsPerHost;
+    private final int pipelineDepth;
+    private final long timeoutNanos;
+    private final Executor executor;
+    private final Selector selector;
+    private final Queue<Runnable> tasks;
+    private final Map<String, Host> hosts;
+    private final BufferPool buffers;
+    private final LongAdder connections;
+    private final Thread loop;
+    private volatile boolean closed;
+
+    /**
+     * Creates provider with 8 connections per host, 8 pipelined requests
+     * per connection and 30 seconds timeout
+     */
+    public HttpProvider() {
+        this(8, 8, 30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @see #HttpProvider(int, int, long, TimeUnit, Executor)
+     */
+    public HttpProvider(int connectionsPerHost, int pipelineDepth, long timeout, TimeUnit unit) {
+        this(connectionsPerHost, pipelineDepth, timeout, unit, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param connectionsPerHost maximum number of connections to the same host and port
+     * @param pipelineDepth      maximum number of requests in flight on a connection,
+     *                           1 disables pipelining
+     * @param timeout            timeout of the fetch
+     * @param unit               unit of the timeout
+     * @param executor           executor to complete products on
+     */
+    public HttpProvider(
+        int connectionsPerHost, int pipelineDepth, long timeout, TimeUnit unit, Executor executor
+    ) {
+        if (connectionsPerHost < 1 || pipelineDepth < 1 || timeout < 1) {
+            throw new IllegalArgumentException("connections, pipeline depth and timeout must be positive");
+        }
+        this.connectionsPerHost = connectionsPerHost;
+        this.pipelineDepth = pipelineDepth;
+        this.timeoutNanos = unit.toNanos(timeout);
+        this.executor = executor;
+        try {
+            this.selector = Selector.open();
+        } catch (IOException e) {
+            throw new IllegalStateException("can't open selector", e);
+        }
+        this.tasks = new ConcurrentLinkedQueue<>();
+        this.hosts = new HashMap<>();
+        this.buffers = new BufferPool(BUFFER_SIZE, MAX_POOLED_BUFFERS);
+        this.connections = new LongAdder();
+        this.loop = new Thread(this::loop, "jcp-http");
+        this.loop.setDaemon(true);
+        this.loop.start();
+    }
+
+    @Override
+    public CompletableFuture<Optional<HttpResponse>> fetchAsync(HttpRequest request) {
+        CompletableFuture<Optional<HttpResponse>> product = new CompletableFuture<>();
+        if (this.closed) {
+            product.completeExceptionally(new IllegalStateException("provider is closed"));
+            return product;
+        }
+        int port = request.getUri().getPort() == -1 ? 80 : request.getUri().getPort();
+        String name = request.getUri().getHost() + ":" + port;
+        Exchange exchange = new Exchange(request, product);
+        ScheduledFuture<?> timeout = QueryExecutors.timer().schedule(() -> {
+            if (product.completeExceptionally(new TimeoutException("can't fetch " + request + " in time"))) {
+                execute(() -> {
+                    if (!this.closed && exchange.connection != null) {
+                        exchange.connection.timeout(exchange, new TimeoutException("fetch timed out"));
+                    }
+                });
+            }
+        }, this.timeoutNanos, TimeUnit.NANOSECONDS);
+        product.whenComplete((p, t) -> timeout.cancel(false));
+        execute(() -> {
+            if (this.closed) {
+                fail(exchange, new IllegalStateException("provider is closed"));
+            } else {
+                Host host = this.hosts.computeIfAbsent(
+                    name, k -> new Host(k, request.getUri().getHost(), port)
+                );
+                host.waiting.addLast(exchange);
+                host.dispatch();
+            }
+        });
+        return product;
+    }
+
+    /**
+     * @return number of connections opened since the provider was created
+     */
+    public long countConnections() {
+        return this.connections.sum();
+    }
+
+    /**
+     * Closes all connections and fails fetches which are in progress
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        this.selector.wakeup();
+        try {
+            this.loop.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Runs the task on selector thread, or on the caller if provider is closed
+     */
+    private void execute(Runnable task) {
+        this.tasks.add(task);
+        this.selector.wakeup();
+        if (this.closed && !this.loop.isAlive()) {
+            runTasks();
+        }
+    }
+
+    private void loop() {
+        while (!this.closed) {
+            try {
+                this.selector.select(SWEEP_INTERVAL_MS);
+                runTasks();
+                Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    ((Connection) key.attachment()).handle(key);
+                }
+                sweep();
+            } catch (Throwable t) {
+                t.printStackTrace();
+            }
+        }
+        IllegalStateException closed = new IllegalStateException("provider is closed");
+        this.hosts.values().forEach(h -> {
+            new ArrayList<>(h.connections).forEach(c -> c.close(closed));
+            h.waiting.forEach(e -> e.product.completeExceptionally(closed));
+            h.waiting.clear();
+        });
+        runTasks();
+        try {
+            this.selector.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = this.tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (Throwable t) {
+                t.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Closes idle connections and forgets hosts which have neither
+     * connections nor waiting requests
+     */
+    private void sweep() {
+        long now = System.nanoTime();
+        Iterator<Host> hosts = this.hosts.values().iterator();
+        while (hosts.hasNext()) {
+            Host h = hosts.next();
+            new ArrayList<>(h.connections).forEach(c -> {
+                if (c.inflight.isEmpty() && now - c.idleSince > IDLE_TIMEOUT) {
+                    c.close(new IOException("connection is idle"));
+                }
+            });
+            if (h.connections.isEmpty() && h.waiting.isEmpty() && !h.resolving) {
+                hosts.remove();
+            }
+        }
+    }
+
+    /**
+     * @return number of hosts which have connections or waiting requests
+     */
+    public int countHosts() {
+        CompletableFuture<Integer> count = new CompletableFuture<>();
+        execute(() -> count.complete(this.hosts.size()));
+        return count.join();
+    }
+
+    private void complete(Exchange exchange, HttpResponse response) {
+        try {
+            this.executor.execute(() -> exchange.product.complete(Optional.of(response)));
+        } catch (RejectedExecutionException e) {
+            exchange.product.complete(Optional.of(response));
+        }
+    }
+
+    private void fail(Exchange exchange, Throwable cause) {
+        IllegalStateException error = new IllegalStateException("can't fetch " + exchange.request, cause);
+        try {
+            this.executor.execute(() -> exchange.product.completeExceptionally(error));
+        } catch (RejectedExecutionException e) {
+            exchange.product.completeExceptionally(error);
+        }
+    }
+
+    private static final class Exchange {
+        private final HttpRequest request;
+        private final CompletableFuture<Optional<HttpResponse>> product;
+        private Connection connection;
+        private int failures;
+
+        private Exchange(HttpRequest request, CompletableFuture<Optional<HttpResponse>> product) {
+            this.request = request;
+            this.product = product;
+        }
+
+        private boolean isHead() {
+            return this.request.getMethod().equals("HEAD");
+        }
+    }
+
+    /**
+     * Connections and waiting requests of the same host, is used by selector thread only
+     */
+    private final class Host {
+        private final String name;
+        private final String hostname;
+        private final int port;
+        private final Deque<Exchange> waiting;
+        private final List<Connection> connections;
+        private InetSocketAddress address;
+        private boolean resolving;
+
+        private Host(String name, String hostname, int port) {
+            this.name = name;
+            this.hostname = hostname;
+            this.port = port;
+            this.waiting = new ArrayDeque<>();
+            this.connections = new ArrayList<>();
+        }
+
+        /**
+         * Resolves the host name on the executor, so the selector thread
+         * doesn't block on DNS, and dispatches waiting requests after that
+         */
+        private void resolve() {
+            this.resolving = true;
+            Runnable resolve = () -> {
+                InetSocketAddress resolved = new InetSocketAddress(this.hostname, this.port);
+                execute(() -> resolved(resolved));
+            };
+            try {
+                executor.execute(resolve);
+            } catch (RejectedExecutionException e) {
+                resolve.run();
+            }
+        }
+
+        private void resolved(InetSocketAddress resolved) {
+            this.resolving = false;
+            if (closed || resolved.isUnresolved()) {
+                IllegalStateException error = new IllegalStateException(
+                    closed ? "provider is closed" : "can't resolve " + this.name
+                );
+                this.waiting.forEach(e -> e.product.completeExceptionally(error));
+                this.waiting.clear();
+                return;
+            }
+            this.address = resolved;
+            dispatch();
+        }
+
+        private void dispatch() {
+            if (this.address == null) {
+                if (!this.resolving && !this.waiting.isEmpty()) {
+                    resolve();
+                }
+                return;
+            }
+            while (!this.waiting.isEmpty()) {
+                Exchange exchange = this.waiting.peekFirst();
+                if (exchange.product.isDone()) {
+                    this.waiting.pollFirst();
+                    continue;
+                }
+                Connection connection;
+                try {
+                    connection = choose(exchange);
+                } catch (IOException e) {
+                    this.waiting.pollFirst();
+                    fail(exchange, e);
+                    continue;
+                }
+                if (connection == null) {
+                    return;
+                }
+                this.waiting.pollFirst();
+                connection.send(exchange);
+            }
+        }
+
+        private Connection choose(Exchange exchange) throws IOException {
+            Connection best = null;
+            for (Connection c : this.connections) {
+                if (c.inflight.isEmpty() && c.accepts(exchange)) {
+                    return c;
+                }
+                if (c.accepts(exchange) && (best == null || c.inflight.size() < best.inflight.size())) {
+                    best = c;
+                }
+            }
+            if (this.connections.size() < connectionsPerHost) {
+                Connection connection = new Connection(this);
+                this.connections.add(connection);
+                return connection;
+            }
+            return best;
+        }
+    }
+
+    /**
+     * Keep-alive connection with pipelined requests, is used by selector thread only
+     */
+    private final class Connection {
+        private final Host host;
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final Deque<Exchange> inflight;
+        private final Deque<ByteBuffer> outgoing;
+        private final ResponseParser parser;
+        private ByteBuffer output;
+        private boolean connected;
+        private boolean closed;
+        private long idleSince;
+
+        private Connection(Host host) throws IOException {
+            this.host = host;
+            this.inflight = new ArrayDeque<>();
+            this.outgoing = new ArrayDeque<>();
+            this.parser = new ResponseParser();
+            this.idleSince = System.nanoTime();
+            this.channel = SocketChannel.open();
+            try {
+                this.channel.configureBlocking(false);
+                this.channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                this.connected = this.channel.connect(host.address);
+                this.key = this.channel.register(
+                    selector, this.connected ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT, this
+                );
+            } catch (IOException e) {
+                this.channel.close();
+                throw e;
+            }
+            connections.increment();
+        }
+
+        private boolean accepts(Exchange exchange) {
+            if (this.closed) {
+                return false;
+            }
+            if (this.inflight.isEmpty()) {
+                return true;
+            }
+            return this.inflight.size() < pipelineDepth
+                && exchange.request.isIdempotent()
+                && this.inflight.peekLast().request.isIdempotent();
+        }
+
+        private void send(Exchange exchange) {
+            exchange.connection = this;
+            this.inflight.addLast(exchange);
+            this.outgoing.addLast(ByteBuffer.wrap(exchange.request.encode()));
+            if (this.connected) {
+                try {
+                    write();
+                } catch (IOException e) {
+                    fail(e);
+                }
+            }
+        }
+
+        private void handle(SelectionKey key) {
+            try {
+                if (!key.isValid()) {
+                    return;
+                }
+                if (key.isConnectable()) {
+                    this.channel.finishConnect();
+                    this.connected = true;
+                    this.key.interestOps(SelectionKey.OP_READ);
+                    write();
+                }
+                if (key.isValid() && key.isWritable()) {
+                    write();
+                }
+                if (key.isValid() && key.isReadable()) {
+                    read();
+                }
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        private void write() throws IOException {
+            while (true) {
+                if (this.output == null) {
+                    if (this.outgoing.isEmpty()) {
+                        this.key.interestOps(SelectionKey.OP_READ);
+                        return;
+                    }
+                    this.output = buffers.acquire();
+                    fill(this.output);
+                    this.output.flip();
+                }
+                this.channel.write(this.output);
+                if (this.output.hasRemaining()) {
+                    this.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+                buffers.release(this.output);
+                this.output = null;
+            }
+        }
+
+        private void fill(ByteBuffer buffer) {
+            while (!this.outgoing.isEmpty() && buffer.hasRemaining()) {
+                ByteBuffer request = this.outgoing.peekFirst();
+                int length = Math.min(request.remaining(), buffer.remaining());
+                ByteBuffer part = request.duplicate();
+                part.limit(part.position() + length);
+                buffer.put(part);
+                request.position(request.position() + length);
+                if (!request.hasRemaining()) {
+                    this.outgoing.pollFirst();
+                }
+            }
+        }
+
+        private void read() throws IOException {
+            ByteBuffer input = buffers.acquire();
+            try {
+                while (!this.closed) {
+                    input.clear();
+                    int read = this.channel.read(input);
+                    if (read < 0) {
+                        Optional<HttpResponse> response = this.parser.close();
+                        if (response.isPresent() && !this.inflight.isEmpty()) {
+                            received(response.get());
+                        }
+                        fail(new IOException("connection is closed by server"));
+                        return;
+                    }
+                    if (read == 0) {
+                        return;
+                    }
+                    input.flip();
+                    while (input.hasRemaining() && !this.closed) {
+                        Exchange exchange = this.inflight.peekFirst();
+                        if (exchange == null) {
+                            throw new IOException("unexpected response");
+                        }
+                        Optional<HttpResponse> response = this.parser.parse(input, exchange.isHead());
+                        if (response.isPresent()) {
+                            received(response.get());
+                            if (!this.parser.isKeepAlive()) {
+                                abort(new IOException("connection is closed by server"), false);
+                            }
+                        }
+                    }
+                }
+            } finally {
+                buffers.release(input);
+            }
+        }
+
+        private void received(HttpResponse response) {
+            Exchange exchange = this.inflight.pollFirst();
+            exchange.connection = null;
+            if (this.inflight.isEmpty()) {
+                this.idleSince = System.nanoTime();
+            }
+            complete(exchange, response);
+            this.host.dispatch();
+        }
+
+        private void fail(Throwable cause) {
+            abort(cause, true);
+        }
+
+        /**
+         * Gives up the timed out request, connection is closed only if it waits
+         * for response of that request, requests behind it are sent again
+         * without being charged. Response of the request which waits behind
+         * others is dropped when it arrives
+         */
+        private void timeout(Exchange exchange, Throwable cause) {
+            if (this.inflight.peekFirst() == exchange) {
+                abort(cause, false);
+            }
+        }
+
+        /**
+         * Closes the connection and sends its requests again
+         *
+         * @param cause   reason to close the connection
+         * @param charged true if the first request is to blame, so it's failed
+         *                unless it's idempotent and may be retried
+         */
+        private void abort(Throwable cause, boolean charged) {
+            if (this.closed) {
+                return;
+            }
+            Exchange first = this.inflight.peekFirst();
+            if (charged && first != null && !first.product.isDone()
+                && (!first.request.isIdempotent() || ++first.failures > MAX_RETRIES)) {
+                this.inflight.pollFirst();
+                HttpProvider.this.fail(first, cause);
+            }
+            Iterator<Exchange> retried = this.inflight.descendingIterator();
+            while (retried.hasNext()) {
+                Exchange exchange = retried.next();
+                exchange.connection = null;
+                this.host.waiting.addFirst(exchange);
+            }
+            this.inflight.clear();
+            close(cause);
+            this.host.dispatch();
+        }
+
+        private void close(Throwable cause) {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            this.host.connections.remove(this);
+            this.key.cancel();
+            try {
+                this.channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            if (this.output != null) {
+                buffers.release(this.output);
+                this.output = null;
+            }
+            this.outgoing.clear();
+            this.inflight.forEach(e -> HttpProvider.this.fail(e, cause));
+            this.inflight.clear();
+        }
+    }
+}
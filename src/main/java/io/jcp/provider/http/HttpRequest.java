@@ -0,0 +1,121 @@
+package io.jcp.provider.http;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Query of {@link HttpProvider}
+ */
+public final class HttpRequest {
+    private final String method;
+    private final URI uri;
+    private final Map<String, String> headers;
+    private final byte[] body;
+
+    /**
+     * Creates GET request of specified URI
+     */
+    public HttpRequest(URI uri) {
+        this("GET", uri, Collections.emptyMap(), new byte[0]);
+    }
+
+    /**
+     * @param method  method of the request, e.g. GET
+     * @param uri     absolute http URI
+     * @param headers headers to send, Host and Content-Length are added by provider
+     * @param body    body to send, may be empty
+     * @throws IllegalArgumentException if URI is not absolute http one, or
+     *                                  method or headers contain line breaks
+     */
+    public HttpRequest(String method, URI uri, Map<String, String> headers, byte[] body) {
+        if (!"http".equalsIgnoreCase(uri.getScheme()) || uri.getHost() == null) {
+            throw new IllegalArgumentException("absolute http URI must be specified: " + uri);
+        }
+        requireSingleLine("method", method);
+        headers.forEach((k, v) -> {
+            requireSingleLine("header name", k);
+            requireSingleLine("header value", v);
+        });
+        this.method = method.toUpperCase();
+        this.uri = uri;
+        this.headers = Collections.unmodifiableMap(new LinkedHashMap<>(headers));
+        this.body = body.clone();
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public URI getUri() {
+        return uri;
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    public byte[] getBody() {
+        return body.clone();
+    }
+
+    /**
+     * @return true if request may be sent again, so it may be pipelined
+     * and retried on a connection closed by the server
+     */
+    boolean isIdempotent() {
+        switch (this.method) {
+            case "GET":
+            case "HEAD":
+            case "OPTIONS":
+            case "TRACE":
+            case "PUT":
+            case "DELETE":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    byte[] encode() {
+        StringBuilder head = new StringBuilder();
+        String path = this.uri.getRawPath() == null || this.uri.getRawPath().isEmpty() ?
+            "/" : this.uri.getRawPath();
+        head.append(this.method).append(' ').append(path);
+        if (this.uri.getRawQuery() != null) {
+            head.append('?').append(this.uri.getRawQuery());
+        }
+        head.append(" HTTP/1.1\r\nHost: ").append(this.uri.getHost());
+        if (this.uri.getPort() != -1) {
+            head.append(':').append(this.uri.getPort());
+        }
+        head.append("\r\n");
+        this.headers.forEach((k, v) -> {
+            if (!"host".equalsIgnoreCase(k) && !"content-length".equalsIgnoreCase(k)) {
+                head.append(k).append(": ").append(v).append("\r\n");
+            }
+        });
+        if (this.body.length > 0 || !this.isIdempotent()) {
+            head.append("Content-Length: ").append(this.body.length).append("\r\n");
+        }
+        head.append("\r\n");
+        byte[] h = head.toString().getBytes(StandardCharsets.ISO_8859_1);
+        byte[] request = new byte[h.length + this.body.length];
+        System.arraycopy(h, 0, request, 0, h.length);
+        System.arraycopy(this.body, 0, request, h.length, this.body.length);
+        return request;
+    }
+
+    private static void requireSingleLine(String what, String value) {
+        if (value.indexOf('\r') >= 0 || value.indexOf('\n') >= 0) {
+            throw new IllegalArgumentException(what + " must not contain line breaks: " + value);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return method + " " + uri;
+    }
+}
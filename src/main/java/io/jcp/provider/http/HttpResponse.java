@@ -0,0 +1,75 @@
+package io.jcp.provider.http;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Product of {@link HttpProvider}
+ */
+public final class HttpResponse {
+    private final int status;
+    private final Map<String, List<String>> headers;
+    private final byte[] body;
+
+    HttpResponse(int status, Map<String, List<String>> headers, byte[] body) {
+        this.status = status;
+        TreeMap<String, List<String>> copy = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        copy.putAll(headers);
+        this.headers = Collections.unmodifiableMap(copy);
+        this.body = body;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * @return headers with case-insensitive names
+     */
+    public Map<String, List<String>> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * @return the first value of the header
+     */
+    public Optional<String> header(String name) {
+        List<String> values = this.headers.get(name);
+        return values == null || values.isEmpty() ? Optional.empty() : Optional.of(values.get(0));
+    }
+
+    public byte[] getBody() {
+        return body.clone();
+    }
+
+    /**
+     * @return body decoded with the charset of Content-Type, UTF-8 by default
+     */
+    public String getBodyAsString() {
+        Charset charset = StandardCharsets.UTF_8;
+        Optional<String> type = header("Content-Type");
+        if (type.isPresent()) {
+            for (String parameter : type.get().split(";")) {
+                String p = parameter.trim();
+                if (p.regionMatches(true, 0, "charset=", 0, 8)) {
+                    try {
+                        charset = Charset.forName(p.substring(8).replace("\"", ""));
+                    } catch (IllegalArgumentException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        }
+        return new String(this.body, charset);
+    }
+
+    @Override
+    public String toString() {
+        return "HttpResponse{status=" + status + ", length=" + body.length + "}";
+    }
+}
@@ -0,0 +1,279 @@
+package io.jcp.provider.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Incremental parser of HTTP/1.1 responses
+ * <p>
+ * Bytes are fed as they are read from the connection, so response may be
+ * split between reads and several pipelined responses may come in one read.
+ * Body is framed by Content-Length, by chunked encoding or by the end
+ * of the connection. Responses with body larger than the limit are rejected
+ */
+final class ResponseParser {
+    private static final int MAX_LINE = 64 * 1024;
+    private static final int MAX_BODY = 64 * 1024 * 1024;
+
+    private enum State {
+        STATUS, HEADERS, BODY, CHUNK_SIZE, CHUNK, CHUNK_END, TRAILERS, UNTIL_CLOSE
+    }
+
+    private final ByteArrayOutputStream line;
+    private final ByteArrayOutputStream body;
+    private final long maxBody;
+    private State state;
+    private int status;
+    private String version;
+    private Map<String, List<String>> headers;
+    private long remaining;
+    private boolean keepAlive;
+
+    ResponseParser() {
+        this(MAX_BODY);
+    }
+
+    /**
+     * @param maxBody maximum size of the body in bytes
+     */
+    ResponseParser(long maxBody) {
+        this.line = new ByteArrayOutputStream();
+        this.body = new ByteArrayOutputStream();
+        this.maxBody = maxBody;
+        reset();
+    }
+
+    /**
+     * Consumes bytes until the response is complete or there are no more bytes
+     *
+     * @param in   bytes read from the connection
+     * @param head true if response is sent to HEAD request, so it has no body
+     * @return complete response or {@link Optional#empty} if more bytes are needed
+     */
+    Optional<HttpResponse> parse(ByteBuffer in, boolean head) throws IOException {
+        while (in.hasRemaining()) {
+            switch (this.state) {
+                case STATUS:
+                    if (readLine(in)) {
+                        status(takeLine());
+                    }
+                    break;
+                case HEADERS:
+                    if (readLine(in)) {
+                        String header = takeLine();
+                        if (header.isEmpty()) {
+                            Optional<HttpResponse> response = headersDone(head);
+                            if (response.isPresent()) {
+                                return response;
+                            }
+                        } else {
+                            header(header);
+                        }
+                    }
+                    break;
+                case BODY:
+                    readBody(in);
+                    if (this.remaining == 0) {
+                        return Optional.of(complete());
+                    }
+                    break;
+                case CHUNK_SIZE:
+                    if (readLine(in)) {
+                        this.remaining = chunkSize(takeLine());
+                        checkBody(this.remaining);
+                        this.state = this.remaining == 0 ? State.TRAILERS : State.CHUNK;
+                    }
+                    break;
+                case CHUNK:
+                    readBody(in);
+                    if (this.remaining == 0) {
+                        this.state = State.CHUNK_END;
+                    }
+                    break;
+                case CHUNK_END:
+                    if (readLine(in)) {
+                        takeLine();
+                        this.state = State.CHUNK_SIZE;
+                    }
+                    break;
+                case TRAILERS:
+                    if (readLine(in) && takeLine().isEmpty()) {
+                        return Optional.of(complete());
+                    }
+                    break;
+                case UNTIL_CLOSE:
+                    checkBody(in.remaining());
+                    byte[] bytes = new byte[in.remaining()];
+                    in.get(bytes);
+                    this.body.write(bytes, 0, bytes.length);
+                    break;
+                default:
+                    throw new IllegalStateException("unknown state " + this.state);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Is called when the connection is closed by the server
+     *
+     * @return response which is framed by the end of the connection,
+     * or {@link Optional#empty} if there is no response in progress
+     * @throws IOException if response is cut in the middle
+     */
+    Optional<HttpResponse> close() throws IOException {
+        if (this.state == State.UNTIL_CLOSE) {
+            return Optional.of(complete());
+        }
+        if (this.state == State.STATUS && this.line.size() == 0) {
+            return Optional.empty();
+        }
+        throw new IOException("connection is closed in the middle of response");
+    }
+
+    /**
+     * @return true if connection may be reused after the last complete response
+     */
+    boolean isKeepAlive() {
+        return this.keepAlive;
+    }
+
+    private void status(String line) throws IOException {
+        String[] parts = line.split(" ", 3);
+        if (parts.length < 2 || !parts[0].startsWith("HTTP/")) {
+            throw new IOException("malformed status line: " + line);
+        }
+        this.version = parts[0];
+        try {
+            this.status = Integer.parseInt(parts[1]);
+        } catch (NumberFormatException e) {
+            throw new IOException("malformed status line: " + line, e);
+        }
+        this.state = State.HEADERS;
+    }
+
+    private void header(String line) throws IOException {
+        int colon = line.indexOf(':');
+        if (colon < 1) {
+            throw new IOException("malformed header: " + line);
+        }
+        this.headers.computeIfAbsent(line.substring(0, colon).trim(), k -> new ArrayList<>())
+            .add(line.substring(colon + 1).trim());
+    }
+
+    private Optional<HttpResponse> headersDone(boolean head) throws IOException {
+        if (this.status >= 100 && this.status < 200 && this.status != 101) {
+            reset();
+            return Optional.empty();
+        }
+        String connection = value("Connection").toLowerCase();
+        this.keepAlive = this.version.equals("HTTP/1.0") ?
+            connection.contains("keep-alive") : !connection.contains("close");
+        if (head || this.status < 200 || this.status == 204 || this.status == 304) {
+            return Optional.of(complete());
+        }
+        if (value("Transfer-Encoding").toLowerCase().contains("chunked")) {
+            this.state = State.CHUNK_SIZE;
+        } else if (!value("Content-Length").isEmpty()) {
+            try {
+                this.remaining = Long.parseLong(value("Content-Length"));
+            } catch (NumberFormatException e) {
+                throw new IOException("malformed content length", e);
+            }
+            if (this.remaining < 0) {
+                throw new IOException("negative content length: " + this.remaining);
+            }
+            checkBody(this.remaining);
+            if (this.remaining == 0) {
+                return Optional.of(complete());
+            }
+            this.state = State.BODY;
+        } else {
+            this.keepAlive = false;
+            this.state = State.UNTIL_CLOSE;
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * @param length number of bytes which are about to be added to the body
+     * @throws IOException if body exceeds the limit
+     */
+    private void checkBody(long length) throws IOException {
+        if (length > this.maxBody - this.body.size()) {
+            throw new IOException("body is larger than " + this.maxBody + " bytes");
+        }
+    }
+
+    private void readBody(ByteBuffer in) {
+        int length = (int) Math.min(in.remaining(), this.remaining);
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        this.body.write(bytes, 0, length);
+        this.remaining -= length;
+    }
+
+    private boolean readLine(ByteBuffer in) throws IOException {
+        while (in.hasRemaining()) {
+            byte b = in.get();
+            if (b == '\n') {
+                return true;
+            }
+            if (this.line.size() == MAX_LINE) {
+                throw new IOException("line is too long");
+            }
+            this.line.write(b);
+        }
+        return false;
+    }
+
+    private String takeLine() {
+        String s = new String(this.line.toByteArray(), StandardCharsets.ISO_8859_1);
+        this.line.reset();
+        return s.endsWith("\r") ? s.substring(0, s.length() - 1) : s;
+    }
+
+    private String value(String header) {
+        List<String> values = this.headers.get(header);
+        return values == null ? "" : String.join(",", values);
+    }
+
+    private static long chunkSize(String line) throws IOException {
+        int extension = line.indexOf(';');
+        String size = (extension < 0 ? line : line.substring(0, extension)).trim();
+        long parsed;
+        try {
+            parsed = Long.parseLong(size, 16);
+        } catch (NumberFormatException e) {
+            throw new IOException("malformed chunk size: " + line, e);
+        }
+        if (parsed < 0) {
+            throw new IOException("negative chunk size: " + line);
+        }
+        return parsed;
+    }
+
+    private HttpResponse complete() {
+        HttpResponse response = new HttpResponse(this.status, this.headers, this.body.toByteArray());
+        boolean keepAlive = this.keepAlive;
+        reset();
+        this.keepAlive = keepAlive;
+        return response;
+    }
+
+    private void reset() {
+        this.state = State.STATUS;
+        this.line.reset();
+        this.body.reset();
+        this.headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        this.remaining = 0;
+        this.keepAlive = false;
+    }
+}
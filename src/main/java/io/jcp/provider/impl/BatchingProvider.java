@@ -0,0 +1,149 @@
+package io.jcp.provider.impl;
+
+import io.jcp.executor.QueryExecutors;
+import io.jcp.provider.AsyncProvider;
+import io.jcp.provider.BatchProvider;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Coalesces single queries into batches for {@link BatchProvider}
+ * <p>
+ * Batch is flushed either when it reaches the size limit or when
+ * its first query has been lingering for the specified time.
+ * Queries which wait for the flush don't hold any thread
+ *
+ * @param <T> is a type of query
+ * @param <H> is a type of product
+ */
+public final class BatchingProvider<T, H> implements AsyncProvider<T, H> {
+    private final BatchProvider<T, H> provider;
+    private final Executor executor;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final ScheduledExecutorService timer;
+    private List<Pending<T, H>> batch;
+    private ScheduledFuture<?> flush;
+
+    public BatchingProvider(
+        BatchProvider<T, H> provider,
+        Executor executor,
+        int batchSize,
+        long linger,
+        TimeUnit unit
+    ) {
+        this(provider, executor, batchSize, linger, unit, QueryExecutors.timer());
+    }
+
+    public BatchingProvider(
+        BatchProvider<T, H> provider,
+        Executor executor,
+        int batchSize,
+        long linger,
+        TimeUnit unit,
+        ScheduledExecutorService timer
+    ) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batch size must be positive");
+        }
+        this.provider = provider;
+        this.executor = executor;
+        this.batchSize = batchSize;
+        this.lingerNanos = unit.toNanos(linger);
+        this.timer = timer;
+        this.batch = new ArrayList<>(batchSize);
+    }
+
+    @Override
+    public CompletableFuture<Optional<H>> fetchAsync(T query) {
+        CompletableFuture<Optional<H>> product = new CompletableFuture<>();
+        List<Pending<T, H>> full = Collections.emptyList();
+        synchronized (this) {
+            this.batch.add(new Pending<>(query, product));
+            if (this.batch.size() >= this.batchSize) {
+                full = drain();
+            } else if (this.batch.size() == 1) {
+                List<Pending<T, H>> lingering = this.batch;
+                this.flush = this.timer.schedule(
+                    () -> flush(lingering), this.lingerNanos, TimeUnit.NANOSECONDS
+                );
+            }
+        }
+        dispatch(full);
+        return product;
+    }
+
+    /**
+     * Flushes the lingering batch unless it's already drained, so the timer
+     * which wasn't cancelled in time doesn't flush the newer batch early
+     */
+    private void flush(List<Pending<T, H>> lingering) {
+        synchronized (this) {
+            if (this.batch != lingering) {
+                return;
+            }
+            drain();
+        }
+        dispatch(lingering);
+    }
+
+    private List<Pending<T, H>> drain() {
+        if (this.flush != null) {
+            this.flush.cancel(false);
+            this.flush = null;
+        }
+        List<Pending<T, H>> drained = this.batch;
+        this.batch = new ArrayList<>(this.batchSize);
+        return drained;
+    }
+
+    private void dispatch(List<Pending<T, H>> pending) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        try {
+            this.executor.execute(() -> execute(pending));
+        } catch (Throwable t) {
+            pending.forEach(p -> p.product.completeExceptionally(t));
+        }
+    }
+
+    private void execute(List<Pending<T, H>> pending) {
+        try {
+            List<Optional<H>> products = this.provider.fetchAll(
+                pending.stream().map(p -> p.query).collect(toList())
+            );
+            if (products.size() != pending.size()) {
+                throw new IllegalStateException(String.format(
+                    "provider returned %d products for %d queries",
+                    products.size(), pending.size()
+                ));
+            }
+            for (int i = 0; i < pending.size(); i++) {
+                pending.get(i).product.complete(products.get(i));
+            }
+        } catch (Throwable t) {
+            pending.forEach(p -> p.product.completeExceptionally(t));
+        }
+    }
+
+    private static final class Pending<T, H> {
+        private final T query;
+        private final CompletableFuture<Optional<H>> product;
+
+        private Pending(T query, CompletableFuture<Optional<H>> product) {
+            this.query = query;
+            this.product = product;
+        }
+    }
+}
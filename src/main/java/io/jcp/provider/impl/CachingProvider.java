@@ -0,0 +1,54 @@
+package io.jcp.provider.impl;
+
+import io.jcp.cache.CacheStats;
+import io.jcp.cache.SegmentedLruCache;
+import io.jcp.provider.AsyncProvider;
+import io.jcp.provider.Provider;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Serves products of repeated queries from the memory
+ * <p>
+ * Only successfully fetched products are cached, so empty product
+ * is fetched again on the next query
+ *
+ * @param <T> is a type of query
+ * @param <H> is a type of product
+ */
+public final class CachingProvider<T, H> implements AsyncProvider<T, H> {
+    private final AsyncProvider<T, H> provider;
+    private final SegmentedLruCache<T, H> cache;
+
+    /**
+     * @param provider provider to fetch products which are not cached
+     * @param executor executor to run blocking fetches on
+     * @param cache    cache to keep products in
+     */
+    public CachingProvider(
+        Provider<T, H> provider, Executor executor, SegmentedLruCache<T, H> cache
+    ) {
+        this.provider = AsyncProvider.of(provider, executor);
+        this.cache = cache;
+    }
+
+    @Override
+    public CompletableFuture<Optional<H>> fetchAsync(T query) {
+        Optional<H> cached = this.cache.get(query);
+        if (cached.isPresent()) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return this.provider.fetchAsync(query).thenApply(product -> {
+            if (product.isPresent()) {
+                this.cache.put(query, product.get());
+            }
+            return product;
+        });
+    }
+
+    public CacheStats stats() {
+        return this.cache.stats();
+    }
+}
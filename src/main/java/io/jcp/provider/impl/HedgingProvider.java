@@ -0,0 +1,196 @@
+package io.jcp.provider.impl;
+
+import io.jcp.executor.QueryExecutors;
+import io.jcp.provider.AsyncProvider;
+import io.jcp.provider.Provider;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Duplicates fetches which are slower than usual
+ * <p>
+ * If the fetch isn't done within the specified percentile of recently
+ * observed latencies, the same query is sent to the alternate provider.
+ * The first product wins and the other fetch is cancelled, failed fetch
+ * or fetch with empty product loses to the other one which is still
+ * in progress. Every fetch
+ * earns {@code budget} of a hedge, so extra load is capped by the budget,
+ * e.g. 0.05 allows at most 5% of queries to be hedged
+ *
+ * @param <T> is a type of query
+ * @param <H> is a type of product
+ */
+public final class HedgingProvider<T, H> implements AsyncProvider<T, H> {
+    private static final int WINDOW = 1024;
+    private static final int MIN_SAMPLES = 20;
+    private static final int RECALCULATION_PERIOD = 16;
+    private static final double MAX_SAVED_HEDGES = 10;
+
+    private final AsyncProvider<T, H> provider;
+    private final AsyncProvider<T, H> alternate;
+    private final double percentile;
+    private final double budget;
+    private final ScheduledExecutorService timer;
+    private final long[] latencies;
+    private final LongAdder hedged;
+    private long samples;
+    private double hedges;
+    private volatile long delayNanos;
+
+    /**
+     * Creates provider which hedges fetches to the same provider
+     *
+     * @param provider   provider to fetch products
+     * @param executor   executor to run blocking fetches on
+     * @param percentile percentile of latency after which fetch is hedged, e.g. 0.95
+     * @param budget     maximum share of hedged fetches, e.g. 0.05
+     */
+    public HedgingProvider(
+        Provider<T, H> provider, Executor executor, double percentile, double budget
+    ) {
+        this(provider, provider, executor, percentile, budget);
+    }
+
+    /**
+     * Creates provider which hedges fetches to the alternate provider
+     *
+     * @param provider   provider to fetch products
+     * @param alternate  provider to send duplicate fetches to
+     * @param executor   executor to run blocking fetches on
+     * @param percentile percentile of latency after which fetch is hedged, e.g. 0.95
+     * @param budget     maximum share of hedged fetches, e.g. 0.05
+     */
+    public HedgingProvider(
+        Provider<T, H> provider,
+        Provider<T, H> alternate,
+        Executor executor,
+        double percentile,
+        double budget
+    ) {
+        this(provider, alternate, executor, percentile, budget, QueryExecutors.timer());
+    }
+
+    public HedgingProvider(
+        Provider<T, H> provider,
+        Provider<T, H> alternate,
+        Executor executor,
+        double percentile,
+        double budget,
+        ScheduledExecutorService timer
+    ) {
+        if (percentile <= 0 || percentile >= 1 || budget < 0 || budget > 1) {
+            throw new IllegalArgumentException("percentile must be in (0, 1) and budget must be in [0, 1]");
+        }
+        this.provider = AsyncProvider.of(provider, executor);
+        this.alternate = AsyncProvider.of(alternate, executor);
+        this.percentile = percentile;
+        this.budget = budget;
+        this.timer = timer;
+        this.latencies = new long[WINDOW];
+        this.hedged = new LongAdder();
+    }
+
+    @Override
+    public CompletableFuture<Optional<H>> fetchAsync(T query) {
+        synchronized (this) {
+            this.hedges = Math.min(MAX_SAVED_HEDGES, this.hedges + this.budget);
+        }
+        long started = System.nanoTime();
+        CompletableFuture<Optional<H>> product = new CompletableFuture<>();
+        AtomicInteger running = new AtomicInteger(1);
+        CompletableFuture<Optional<H>> primary = this.provider.fetchAsync(query);
+        primary.whenComplete((p, t) -> complete(product, running, started, p, t));
+        long delay = this.delayNanos;
+        if (delay > 0 && !product.isDone()) {
+            ScheduledFuture<?> hedge = this.timer.schedule(
+                () -> hedge(query, product, running, started), delay, TimeUnit.NANOSECONDS
+            );
+            product.whenComplete((p, t) -> hedge.cancel(false));
+        }
+        product.whenComplete((p, t) -> primary.cancel(true));
+        return product;
+    }
+
+    /**
+     * @return number of fetches which were duplicated
+     */
+    public long countHedged() {
+        return this.hedged.sum();
+    }
+
+    /**
+     * @return current delay after which fetch is hedged, or zero
+     * if there are not enough observed latencies yet
+     */
+    public long delay(TimeUnit unit) {
+        return unit.convert(this.delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void hedge(
+        T query, CompletableFuture<Optional<H>> product, AtomicInteger running, long started
+    ) {
+        if (product.isDone() || !tryAcquire()) {
+            return;
+        }
+        this.hedged.increment();
+        running.incrementAndGet();
+        try {
+            CompletableFuture<Optional<H>> duplicate = this.alternate.fetchAsync(query);
+            duplicate.whenComplete((p, t) -> complete(product, running, started, p, t));
+            product.whenComplete((p, t) -> duplicate.cancel(true));
+        } catch (Throwable t) {
+            t.printStackTrace();
+            complete(product, running, started, null, t);
+        }
+    }
+
+    private synchronized boolean tryAcquire() {
+        if (this.hedges < 1) {
+            return false;
+        }
+        this.hedges -= 1;
+        return true;
+    }
+
+    private synchronized void record(long latency) {
+        this.latencies[(int) (this.samples % WINDOW)] = latency;
+        this.samples++;
+        if (this.samples >= MIN_SAMPLES && this.samples % RECALCULATION_PERIOD == 0) {
+            int size = (int) Math.min(this.samples, WINDOW);
+            long[] sorted = Arrays.copyOf(this.latencies, size);
+            Arrays.sort(sorted);
+            this.delayNanos = sorted[(int) Math.min(size - 1, Math.ceil(size * this.percentile))];
+        }
+    }
+
+    /**
+     * Completes the product by the first fetch which succeeded and records
+     * its latency, failure or empty product completes it only if there is
+     * no other fetch in progress
+     */
+    private void complete(
+        CompletableFuture<Optional<H>> product, AtomicInteger running, long started, Optional<H> p, Throwable t
+    ) {
+        if (t == null && p.isPresent()) {
+            long latency = System.nanoTime() - started;
+            if (!product.isDone()) {
+                record(latency);
+            }
+            product.complete(p);
+        } else if (running.decrementAndGet() == 0) {
+            if (t != null) {
+                product.completeExceptionally(t);
+            } else {
+                product.complete(p);
+            }
+        }
+    }
+}
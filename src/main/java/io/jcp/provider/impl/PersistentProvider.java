@@ -0,0 +1,70 @@
+package io.jcp.provider.impl;
+
+import io.jcp.cache.PersistentStore;
+import io.jcp.codec.Codec;
+import io.jcp.provider.AsyncProvider;
+import io.jcp.provider.Provider;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * Keeps fetched products in {@link PersistentStore}, so they are
+ * served from the local disk after restart instead of being fetched again
+ * <p>
+ * Only successfully fetched products are stored
+ *
+ * @param <T> is a type of query
+ * @param <H> is a type of product
+ */
+public final class PersistentProvider<T, H> implements AsyncProvider<T, H> {
+    private final AsyncProvider<T, H> provider;
+    private final PersistentStore store;
+    private final Function<T, String> key;
+    private final Codec<H> codec;
+
+    /**
+     * @param provider provider to fetch products which are not stored
+     * @param executor executor to run blocking fetches on
+     * @param store    store to keep products in
+     * @param key      function to extract key of the query, must be stable between runs
+     * @param codec    codec of products
+     */
+    public PersistentProvider(
+        Provider<T, H> provider,
+        Executor executor,
+        PersistentStore store,
+        Function<T, String> key,
+        Codec<H> codec
+    ) {
+        this.provider = AsyncProvider.of(provider, executor);
+        this.store = store;
+        this.key = key;
+        this.codec = codec;
+    }
+
+    @Override
+    public CompletableFuture<Optional<H>> fetchAsync(T query) {
+        String k = this.key.apply(query);
+        Optional<byte[]> stored = this.store.get(k);
+        if (stored.isPresent()) {
+            try {
+                return CompletableFuture.completedFuture(Optional.of(this.codec.decode(stored.get())));
+            } catch (Throwable t) {
+                t.printStackTrace();
+            }
+        }
+        return this.provider.fetchAsync(query).thenApply(product -> {
+            if (product.isPresent()) {
+                try {
+                    this.store.put(k, this.codec.encode(product.get()));
+                } catch (Throwable t) {
+                    t.printStackTrace();
+                }
+            }
+            return product;
+        });
+    }
+}
@@ -0,0 +1,83 @@
+package io.jcp.provider.impl;
+
+import io.jcp.provider.AsyncProvider;
+import io.jcp.provider.Provider;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * Deduplicates identical queries which are in flight at the same time
+ * <p>
+ * While query is being fetched, every other query with the same key
+ * waits for the same fetch instead of calling the provider again.
+ * Products are not kept after the fetch is done
+ *
+ * @param <T> is a type of query
+ * @param <H> is a type of product
+ */
+public final class SingleFlightProvider<T, H> implements AsyncProvider<T, H> {
+    private final AsyncProvider<T, H> provider;
+    private final Function<T, ?> key;
+    private final ConcurrentMap<Object, CompletableFuture<Optional<H>>> inFlight;
+
+    /**
+     * Creates provider which considers queries identical if they are equal
+     *
+     * @param provider provider to fetch products
+     * @param executor executor to run blocking fetches on
+     */
+    public SingleFlightProvider(Provider<T, H> provider, Executor executor) {
+        this(provider, executor, Function.identity());
+    }
+
+    /**
+     * Creates provider which considers queries identical if they have equal keys
+     *
+     * @param provider provider to fetch products
+     * @param executor executor to run blocking fetches on
+     * @param key      function to extract key of the query
+     */
+    public SingleFlightProvider(
+        Provider<T, H> provider, Executor executor, Function<T, ?> key
+    ) {
+        this.provider = AsyncProvider.of(provider, executor);
+        this.key = key;
+        this.inFlight = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public CompletableFuture<Optional<H>> fetchAsync(T query) {
+        Object k = this.key.apply(query);
+        CompletableFuture<Optional<H>> created = new CompletableFuture<>();
+        CompletableFuture<Optional<H>> existing = this.inFlight.putIfAbsent(k, created);
+        if (existing != null) {
+            return existing.thenApply(Function.identity());
+        }
+        try {
+            this.provider.fetchAsync(query).whenComplete((product, t) -> {
+                this.inFlight.remove(k, created);
+                if (t != null) {
+                    created.completeExceptionally(t);
+                } else {
+                    created.complete(product);
+                }
+            });
+        } catch (Throwable t) {
+            this.inFlight.remove(k, created);
+            created.completeExceptionally(t);
+        }
+        return created.thenApply(Function.identity());
+    }
+
+    /**
+     * @return number of distinct queries which are being fetched at the moment
+     */
+    public int countInFlight() {
+        return this.inFlight.size();
+    }
+}
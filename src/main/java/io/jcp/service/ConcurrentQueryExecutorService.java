@@ -3,7 +3,9 @@ package io.jcp.service;
 import io.jcp.bean.ExecutionCallback;
 
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 public interface ConcurrentQueryExecutorService<T, H> extends QueryExecutorService<T, H> {
@@ -13,8 +15,55 @@ public interface ConcurrentQueryExecutorService<T, H> extends QueryExecutorServi
 
     Future<Optional<H>> submit(T query);
 
+    /**
+     * Submits the query which should be started within specified time,
+     * so queries with closer deadline overtake the others in the scheduler.
+     * By default deadline is ignored and the query is submitted as usual
+     *
+     * @param query    query to execute
+     * @param deadline time within which the query should be started
+     * @param unit     unit of the deadline
+     * @param callback callback to call when the query is done
+     * @return future of the product
+     */
+    default Future<Optional<H>> submit(
+        T query, long deadline, TimeUnit unit, Optional<ExecutionCallback<T, H>> callback
+    ) {
+        return submit(query, callback);
+    }
+
+    /**
+     * Submits queries from the frontier until it's empty, keeping at most
+     * {@code window} of them in flight. Callback may add new queries to
+     * the frontier, e.g. links found in the product
+     *
+     * @param frontier queue of pending queries
+     * @param window   maximum number of submitted queries which are not done
+     * @param callback callback to call when each query is done
+     * @return future which completes when frontier is empty and all its queries are done
+     * @throws IllegalStateException if service doesn't support frontiers, which is the default
+     */
+    default CompletableFuture<Void> drain(
+        Frontier<T> frontier, int window, Optional<ExecutionCallback<T, H>> callback
+    ) {
+        throw new IllegalStateException("can't drain frontier, it's not supported by " + getClass().getName());
+    }
+
     long countSubmitted();
 
     long countInProgress();
 
+    /**
+     * Blocks new submissions and waits until submitted queries are done.
+     * By default it's {@link #shutdown()} which doesn't give up on timeout
+     *
+     * @param timeout maximum time to wait
+     * @param unit    unit of timeout
+     * @return false if some queries are still not done after the timeout
+     */
+    default boolean shutdown(long timeout, TimeUnit unit) {
+        shutdown();
+        return true;
+    }
+
 }
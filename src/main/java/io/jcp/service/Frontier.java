@@ -0,0 +1,49 @@
+package io.jcp.service;
+
+import java.util.ArrayDeque;
+import java.util.Optional;
+import java.util.Queue;
+
+/**
+ * Queue of pending queries which are not submitted yet
+ * <p>
+ * Frontier keeps queries only, so pending query costs no more than
+ * its own size, while submitted query holds its callback and future.
+ * Implementations must be thread safe
+ *
+ * @param <T> is a type of query
+ */
+public interface Frontier<T> {
+    void add(T query);
+
+    /**
+     * @return the oldest query, or empty if there are no queries
+     */
+    Optional<T> poll();
+
+    long size();
+
+    /**
+     * @return frontier which keeps all queries in memory
+     */
+    static <T> Frontier<T> memory() {
+        return new Frontier<T>() {
+            private final Queue<T> queries = new ArrayDeque<>();
+
+            @Override
+            public synchronized void add(T query) {
+                this.queries.add(query);
+            }
+
+            @Override
+            public synchronized Optional<T> poll() {
+                return Optional.ofNullable(this.queries.poll());
+            }
+
+            @Override
+            public synchronized long size() {
+                return this.queries.size();
+            }
+        };
+    }
+}
@@ -1,11 +1,30 @@
 package io.jcp.service;
 
+import io.jcp.executor.QueryExecutors;
+
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @FunctionalInterface
 public interface QueryExecutorService<T, H> {
     Optional<H> exec(T query);
 
+    default CompletableFuture<Optional<H>> execAsync(T query) {
+        return CompletableFuture.completedFuture(exec(query));
+    }
+
+    /**
+     * Executes the query which must be done by the deadline,
+     * otherwise the future completes with {@link java.util.concurrent.TimeoutException}
+     *
+     * @param query    query to execute
+     * @param deadline {@link System#nanoTime} by which the query must be done
+     * @return {@link java.util.concurrent.CompletableFuture} of the product
+     */
+    default CompletableFuture<Optional<H>> execAsync(T query, long deadline) {
+        return QueryExecutors.within(execAsync(query), deadline);
+    }
+
     default void shutdown() {
     }
 
@@ -0,0 +1,52 @@
+package io.jcp.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Decides when submitted query is allowed to be executed
+ * <p>
+ * Scheduler keeps pending queries by itself, so queries which
+ * are not allowed to be executed yet don't hold any thread
+ *
+ * @param <T> is a type of query
+ */
+public interface QueryScheduler<T> {
+    /**
+     * Schedules execution of the query
+     *
+     * @param query query to execute
+     * @param task  task which starts execution of the query
+     * @return {@link java.util.concurrent.CompletableFuture} which completes
+     * with the result of the task once it's started and done
+     */
+    <V> CompletableFuture<V> schedule(T query, Supplier<CompletableFuture<V>> task);
+
+    /**
+     * Schedules execution of the query which should be started before
+     * the deadline. Schedulers which don't order queries ignore the deadline
+     *
+     * @param query    query to execute
+     * @param deadline {@link System#nanoTime} by which the query should be started
+     * @param task     task which starts execution of the query
+     * @return {@link java.util.concurrent.CompletableFuture} which completes
+     * with the result of the task once it's started and done
+     */
+    default <V> CompletableFuture<V> schedule(
+        T query, long deadline, Supplier<CompletableFuture<V>> task
+    ) {
+        return schedule(query, task);
+    }
+
+    /**
+     * @return scheduler which starts every query immediately
+     */
+    static <T> QueryScheduler<T> immediate() {
+        return new QueryScheduler<T>() {
+            @Override
+            public <V> CompletableFuture<V> schedule(T query, Supplier<CompletableFuture<V>> task) {
+                return task.get();
+            }
+        };
+    }
+}
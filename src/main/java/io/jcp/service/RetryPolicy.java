@@ -0,0 +1,94 @@
+package io.jcp.service;
+
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiPredicate;
+
+/**
+ * Decides whether failed query must be executed again and when
+ * <p>
+ * Backoff grows exponentially with every attempt up to the limit and is
+ * fully jittered, i.e. the actual delay is random between zero and the
+ * backoff, so queries failed at the same moment don't retry in lockstep.
+ * Cancelled queries are never retried
+ *
+ * @param <H> is a type of product
+ */
+public final class RetryPolicy<H> {
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+    private final BiPredicate<Optional<H>, Throwable> retryOn;
+
+    /**
+     * Creates policy which retries queries which failed or have no product
+     *
+     * @param maxAttempts    maximum number of attempts including the first one
+     * @param initialBackoff backoff before the first retry
+     * @param maxBackoff     maximum backoff
+     * @param unit           unit of backoffs
+     */
+    public RetryPolicy(int maxAttempts, long initialBackoff, long maxBackoff, TimeUnit unit) {
+        this(
+            maxAttempts, initialBackoff, maxBackoff, unit,
+            (product, error) -> error != null || !product.isPresent()
+        );
+    }
+
+    /**
+     * @param maxAttempts    maximum number of attempts including the first one
+     * @param initialBackoff backoff before the first retry
+     * @param maxBackoff     maximum backoff
+     * @param unit           unit of backoffs
+     * @param retryOn        predicate which receives product of the attempt
+     *                       or its error, the other argument is {@code null}
+     */
+    public RetryPolicy(
+        int maxAttempts,
+        long initialBackoff,
+        long maxBackoff,
+        TimeUnit unit,
+        BiPredicate<Optional<H>, Throwable> retryOn
+    ) {
+        if (maxAttempts < 1 || initialBackoff < 0 || maxBackoff < initialBackoff) {
+            throw new IllegalArgumentException("attempts must be positive and backoffs must be ordered");
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffNanos = unit.toNanos(initialBackoff);
+        this.maxBackoffNanos = unit.toNanos(maxBackoff);
+        this.retryOn = retryOn;
+    }
+
+    /**
+     * @return policy which never retries
+     */
+    public static <H> RetryPolicy<H> none() {
+        return new RetryPolicy<>(1, 0, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param attempt number of attempts made so far
+     * @param product product of the last attempt, {@code null} if it failed
+     * @param error   error of the last attempt, {@code null} if it succeeded
+     * @return true if one more attempt must be made
+     */
+    public boolean shouldRetry(int attempt, Optional<H> product, Throwable error) {
+        return attempt < this.maxAttempts
+            && !(error instanceof CancellationException)
+            && this.retryOn.test(product, error);
+    }
+
+    /**
+     * @param attempt number of attempts made so far
+     * @return delay before the next attempt in nanoseconds
+     */
+    public long backoff(int attempt) {
+        long backoff = this.initialBackoffNanos;
+        for (int i = 1; i < attempt && backoff < this.maxBackoffNanos; i++) {
+            backoff = backoff > this.maxBackoffNanos / 2 ? this.maxBackoffNanos : backoff * 2;
+        }
+        return backoff == 0 ? 0 : ThreadLocalRandom.current().nextLong(backoff + 1);
+    }
+}
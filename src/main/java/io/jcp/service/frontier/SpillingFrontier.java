@@ -0,0 +1,223 @@
+package io.jcp.service.frontier;
+
+import io.jcp.codec.Codec;
+import io.jcp.service.Frontier;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Optional;
+import java.util.Queue;
+
+/**
+ * Frontier which keeps a bounded head of queries in memory and spills
+ * the rest to the disk
+ * <p>
+ * Queries beyond {@code memoryCapacity} are appended to segment files
+ * sequentially through {@link FileChannel} and are read back in chunks
+ * once the head is drained, so the order of queries is kept and heap
+ * doesn't depend on the number of pending queries. Segments are deleted
+ * as soon as they are read, the rest of them is deleted on close
+ *
+ * @param <T> is a type of query
+ */
+public final class SpillingFrontier<T> implements Frontier<T>, Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path directory;
+    private final int memoryCapacity;
+    private final long segmentSize;
+    private final Codec<T> codec;
+    private final Queue<T> head;
+    private final Deque<Segment> segments;
+    private final ByteBuffer writeBuffer;
+    private ByteBuffer readBuffer;
+    private long spilled;
+    private boolean closed;
+
+    /**
+     * @param directory      directory to keep segments in
+     * @param memoryCapacity maximum number of queries kept in memory
+     * @param segmentSize    size of the segment file in bytes
+     * @param codec          codec to write queries to the disk
+     */
+    public SpillingFrontier(Path directory, int memoryCapacity, long segmentSize, Codec<T> codec) {
+        if (memoryCapacity < 1 || segmentSize < 1) {
+            throw new IllegalArgumentException("capacity and segment size must be positive");
+        }
+        this.directory = directory;
+        this.memoryCapacity = memoryCapacity;
+        this.segmentSize = segmentSize;
+        this.codec = codec;
+        this.head = new ArrayDeque<>();
+        this.segments = new ArrayDeque<>();
+        this.writeBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.readBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new IllegalStateException("can't create frontier in " + directory, e);
+        }
+    }
+
+    @Override
+    public synchronized void add(T query) {
+        if (this.closed) {
+            throw new IllegalStateException("frontier is closed");
+        }
+        if (this.spilled == 0 && this.head.size() < this.memoryCapacity) {
+            this.head.add(query);
+            return;
+        }
+        try {
+            spill(this.codec.encode(query));
+        } catch (IOException e) {
+            throw new IllegalStateException("can't spill query to " + this.directory, e);
+        }
+        this.spilled++;
+    }
+
+    @Override
+    public synchronized Optional<T> poll() {
+        if (this.head.isEmpty() && this.spilled > 0) {
+            try {
+                refill();
+            } catch (IOException e) {
+                throw new IllegalStateException("can't read queries from " + this.directory, e);
+            }
+        }
+        return Optional.ofNullable(this.head.poll());
+    }
+
+    @Override
+    public synchronized long size() {
+        return this.head.size() + this.spilled;
+    }
+
+    /**
+     * @return number of queries which are kept on the disk
+     */
+    public synchronized long countSpilled() {
+        return this.spilled;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        this.head.clear();
+        this.spilled = 0;
+        this.segments.forEach(Segment::delete);
+        this.segments.clear();
+    }
+
+    private void spill(byte[] bytes) throws IOException {
+        Segment tail = this.segments.peekLast();
+        if (tail == null || tail.written >= this.segmentSize) {
+            flush();
+            tail = new Segment(Files.createTempFile(this.directory, "frontier-", ".dat"));
+            this.segments.add(tail);
+        }
+        if (this.writeBuffer.remaining() < Integer.BYTES + bytes.length) {
+            flush();
+        }
+        if (this.writeBuffer.remaining() < Integer.BYTES + bytes.length) {
+            ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + bytes.length);
+            record.putInt(bytes.length).put(bytes).flip();
+            tail.write(record);
+        } else {
+            this.writeBuffer.putInt(bytes.length).put(bytes);
+        }
+        tail.written += Integer.BYTES + bytes.length;
+    }
+
+    private void flush() throws IOException {
+        Segment tail = this.segments.peekLast();
+        this.writeBuffer.flip();
+        if (tail != null) {
+            tail.write(this.writeBuffer);
+        }
+        this.writeBuffer.clear();
+    }
+
+    private void refill() throws IOException {
+        flush();
+        while (this.head.size() < this.memoryCapacity && !this.segments.isEmpty()) {
+            Segment segment = this.segments.peek();
+            if (segment.read >= segment.written) {
+                if (segment == this.segments.peekLast()) {
+                    break;
+                }
+                this.segments.poll().delete();
+                continue;
+            }
+            this.readBuffer.clear();
+            segment.read(this.readBuffer);
+            this.readBuffer.flip();
+            if (this.readBuffer.remaining() >= Integer.BYTES) {
+                int length = this.readBuffer.getInt(0);
+                if (Integer.BYTES + length > this.readBuffer.capacity()) {
+                    this.readBuffer = ByteBuffer.allocateDirect(Integer.BYTES + length);
+                    continue;
+                }
+            }
+            while (this.head.size() < this.memoryCapacity && this.readBuffer.remaining() >= Integer.BYTES) {
+                int length = this.readBuffer.getInt(this.readBuffer.position());
+                if (this.readBuffer.remaining() < Integer.BYTES + length) {
+                    break;
+                }
+                byte[] bytes = new byte[length];
+                this.readBuffer.getInt();
+                this.readBuffer.get(bytes);
+                this.head.add(this.codec.decode(bytes));
+                segment.read += Integer.BYTES + length;
+                this.spilled--;
+            }
+        }
+        if (this.segments.size() == 1 && this.spilled == 0) {
+            this.segments.poll().delete();
+        }
+    }
+
+    private static final class Segment {
+        private final Path path;
+        private final FileChannel channel;
+        private long written;
+        private long read;
+
+        private Segment(Path path) throws IOException {
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        private void write(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                this.channel.write(buffer);
+            }
+        }
+
+        private void read(ByteBuffer buffer) throws IOException {
+            long position = this.read;
+            while (buffer.hasRemaining() && this.channel.read(buffer, position) > 0) {
+                position = this.read + buffer.position();
+            }
+        }
+
+        private void delete() {
+            try {
+                this.channel.close();
+                Files.deleteIfExists(this.path);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
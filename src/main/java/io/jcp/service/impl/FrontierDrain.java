@@ -0,0 +1,83 @@
+package io.jcp.service.impl;
+
+import io.jcp.service.Frontier;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Submits queries from the frontier keeping at most {@code window}
+ * of them in flight
+ * <p>
+ * Next query is taken when one of the submitted queries is done, so
+ * queries added to the frontier by callbacks are submitted as well.
+ * Drain is done once the frontier is empty and no query is in flight.
+ * Queries which are done synchronously don't recurse, they are handled
+ * by the loop which is already running
+ *
+ * @param <T> is a type of query
+ */
+final class FrontierDrain<T> {
+    private final Frontier<T> frontier;
+    private final int window;
+    private final Function<T, CompletableFuture<?>> submit;
+    private final CompletableFuture<Void> drained;
+    private final AtomicInteger requested;
+    private int running;
+
+    FrontierDrain(Frontier<T> frontier, int window, Function<T, CompletableFuture<?>> submit) {
+        if (window < 1) {
+            throw new IllegalArgumentException("window must be positive");
+        }
+        this.frontier = frontier;
+        this.window = window;
+        this.submit = submit;
+        this.drained = new CompletableFuture<>();
+        this.requested = new AtomicInteger();
+    }
+
+    CompletableFuture<Void> start() {
+        pull();
+        return this.drained;
+    }
+
+    private void pull() {
+        if (this.requested.getAndIncrement() != 0) {
+            return;
+        }
+        do {
+            submitAvailable();
+        } while (this.requested.decrementAndGet() != 0);
+    }
+
+    private void submitAvailable() {
+        while (!this.drained.isDone()) {
+            Optional<T> query;
+            try {
+                synchronized (this) {
+                    if (this.running >= this.window) {
+                        return;
+                    }
+                    query = this.frontier.poll();
+                    if (!query.isPresent()) {
+                        if (this.running == 0) {
+                            this.drained.complete(null);
+                        }
+                        return;
+                    }
+                    this.running++;
+                }
+                this.submit.apply(query.get()).whenComplete((p, t) -> {
+                    synchronized (this) {
+                        this.running--;
+                    }
+                    pull();
+                });
+            } catch (Throwable t) {
+                this.drained.completeExceptionally(t);
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package io.jcp.service.impl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Counts queries in flight and lets the caller wait until all of them are done
+ * <p>
+ * Queries are spread over padded stripes, so concurrent submissions don't
+ * contend on a single counter. Query leaves the same stripe it entered,
+ * hence every stripe is never negative and the set of stripes is empty
+ * exactly when all its queries are done, even though stripes are not read
+ * atomically. Completions signal the waiter only while somebody waits
+ */
+final class InFlightQueries {
+    private static final int PADDING = 16;
+
+    private final int mask;
+    private final AtomicLongArray stripes;
+    private final ReentrantLock lock;
+    private final Condition drained;
+    private volatile boolean awaited;
+
+    InFlightQueries() {
+        int count = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)) * 2;
+        this.mask = count - 1;
+        this.stripes = new AtomicLongArray(count * PADDING);
+        this.lock = new ReentrantLock();
+        this.drained = this.lock.newCondition();
+    }
+
+    /**
+     * @return stripe the query must leave
+     */
+    int enter() {
+        int stripe = (int) (Thread.currentThread().getId() & this.mask) * PADDING;
+        this.stripes.incrementAndGet(stripe);
+        return stripe;
+    }
+
+    void leave(int stripe) {
+        if (this.stripes.decrementAndGet(stripe) == 0 && this.awaited) {
+            this.lock.lock();
+            try {
+                this.drained.signalAll();
+            } finally {
+                this.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Waits until all queries are done
+     *
+     * @return false if timeout elapsed before
+     */
+    boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        long left = unit.toNanos(timeout);
+        this.awaited = true;
+        this.lock.lock();
+        try {
+            while (!isEmpty()) {
+                if (left <= 0) {
+                    return false;
+                }
+                left = this.drained.awaitNanos(left);
+            }
+            return true;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private boolean isEmpty() {
+        for (int i = 0; i < this.stripes.length(); i += PADDING) {
+            if (this.stripes.get(i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,86 +1,384 @@
 package io.jcp.service.impl;
 
 import io.jcp.bean.ExecutionCallback;
+import io.jcp.executor.QueryExecutors;
 import io.jcp.listener.QueryLifecycleListener;
+import io.jcp.provider.AsyncProvider;
+import io.jcp.provider.BatchProvider;
 import io.jcp.provider.Provider;
+import io.jcp.provider.impl.BatchingProvider;
 import io.jcp.service.ConcurrentQueryExecutorService;
+import io.jcp.service.Frontier;
 import io.jcp.service.QueryExecutorService;
+import io.jcp.service.QueryScheduler;
+import io.jcp.service.RetryPolicy;
 
 import java.util.Collection;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 public final class ManagedQueryExecutorService<T, H>
     implements ConcurrentQueryExecutorService<T, H> {
 
-    private final ThreadPoolExecutor threadPool;
+    private final ExecutorService threadPool;
     private final Collection<QueryLifecycleListener<T>> queryLifecycleListeners;
     private final Provider<T, H> provider;
-    private final AtomicLong submittedQueries;
-    private final AtomicLong inProgressQueries;
+    private final Optional<AsyncProvider<T, H>> asyncProvider;
+    private final QueryScheduler<T> scheduler;
+    private final RetryPolicy<H> retryPolicy;
+    private final long timeoutNanos;
+    private final ScheduledExecutorService timer;
+    private final LongAdder submittedQueries;
+    private final LongAdder inProgressQueries;
+    private final InFlightQueries inFlight;
     private final AtomicBoolean shuttingDown;
 
     public ManagedQueryExecutorService(
-        ThreadPoolExecutor threadPool,
+        ExecutorService threadPool,
         Collection<QueryLifecycleListener<T>> queryLifecycleListeners,
         Provider<T, H> provider
+    ) {
+        this(threadPool, queryLifecycleListeners, provider, QueryScheduler.immediate());
+    }
+
+    /**
+     * Creates service which executes queries when scheduler allows
+     *
+     * @param threadPool              pool to execute queries
+     * @param queryLifecycleListeners listeners of query lifecycle
+     * @param provider                provider to fetch products
+     * @param scheduler               scheduler to decide when query may be executed
+     */
+    public ManagedQueryExecutorService(
+        ExecutorService threadPool,
+        Collection<QueryLifecycleListener<T>> queryLifecycleListeners,
+        Provider<T, H> provider,
+        QueryScheduler<T> scheduler
+    ) {
+        this(threadPool, queryLifecycleListeners, provider, scheduler, RetryPolicy.none());
+    }
+
+    /**
+     * Creates service which executes failed queries again according to the policy.
+     * Queries which back off before the next attempt don't hold any thread
+     * and are counted as submitted
+     *
+     * @param threadPool              pool to execute queries
+     * @param queryLifecycleListeners listeners of query lifecycle
+     * @param provider                provider to fetch products
+     * @param scheduler               scheduler to decide when query may be executed
+     * @param retryPolicy             policy to retry failed queries
+     */
+    public ManagedQueryExecutorService(
+        ExecutorService threadPool,
+        Collection<QueryLifecycleListener<T>> queryLifecycleListeners,
+        Provider<T, H> provider,
+        QueryScheduler<T> scheduler,
+        RetryPolicy<H> retryPolicy
+    ) {
+        this(
+            threadPool, queryLifecycleListeners, provider,
+            scheduler, retryPolicy, Long.MAX_VALUE, TimeUnit.NANOSECONDS
+        );
+    }
+
+    /**
+     * Creates service which cancels every attempt of the query if it isn't
+     * done within the timeout. Blocking fetch is interrupted, callbacks get
+     * empty product, future of the submitted query completes with
+     * {@link TimeoutException} and listeners are notified via
+     * {@link QueryLifecycleListener#onTimeout}. Cancelling the future
+     * of the submitted query interrupts its fetch as well
+     *
+     * @param threadPool              pool to execute queries
+     * @param queryLifecycleListeners listeners of query lifecycle
+     * @param provider                provider to fetch products
+     * @param scheduler               scheduler to decide when query may be executed
+     * @param retryPolicy             policy to retry failed queries
+     * @param timeout                 maximum time of one attempt since it's handed to the pool
+     * @param unit                    unit of timeout
+     */
+    public ManagedQueryExecutorService(
+        ExecutorService threadPool,
+        Collection<QueryLifecycleListener<T>> queryLifecycleListeners,
+        Provider<T, H> provider,
+        QueryScheduler<T> scheduler,
+        RetryPolicy<H> retryPolicy,
+        long timeout,
+        TimeUnit unit
+    ) {
+        this(
+            threadPool, queryLifecycleListeners, provider,
+            scheduler, retryPolicy, timeout, unit, QueryExecutors.timer()
+        );
+    }
+
+    public ManagedQueryExecutorService(
+        ExecutorService threadPool,
+        Collection<QueryLifecycleListener<T>> queryLifecycleListeners,
+        Provider<T, H> provider,
+        QueryScheduler<T> scheduler,
+        RetryPolicy<H> retryPolicy,
+        long timeout,
+        TimeUnit unit,
+        ScheduledExecutorService timer
     ) {
         this.threadPool = threadPool;
         this.queryLifecycleListeners = queryLifecycleListeners;
         this.provider = provider;
-        this.submittedQueries = new AtomicLong();
-        this.inProgressQueries = new AtomicLong();
+        this.asyncProvider = provider instanceof AsyncProvider ?
+            Optional.of((AsyncProvider<T, H>) provider) : Optional.empty();
+        this.scheduler = scheduler;
+        this.retryPolicy = retryPolicy;
+        this.timeoutNanos = unit.toNanos(timeout);
+        this.timer = timer;
+        this.submittedQueries = new LongAdder();
+        this.inProgressQueries = new LongAdder();
+        this.inFlight = new InFlightQueries();
         this.shuttingDown = new AtomicBoolean(false);
     }
 
+    /**
+     * Creates service which coalesces submitted queries into batches
+     *
+     * @param threadPool              pool to execute batches
+     * @param queryLifecycleListeners listeners of query lifecycle
+     * @param provider                provider to execute batches
+     * @param batchSize               maximum number of queries in the batch
+     * @param linger                  maximum time for query to wait for the batch to be filled
+     * @param unit                    unit of linger time
+     */
+    public ManagedQueryExecutorService(
+        ExecutorService threadPool,
+        Collection<QueryLifecycleListener<T>> queryLifecycleListeners,
+        BatchProvider<T, H> provider,
+        int batchSize,
+        long linger,
+        TimeUnit unit
+    ) {
+        this(
+            threadPool, queryLifecycleListeners,
+            new BatchingProvider<>(provider, threadPool, batchSize, linger, unit)
+        );
+    }
+
     @Override
     public Future<Optional<H>> submit(
         T query, Optional<ExecutionCallback<T, H>> callback
     ) {
-        Function<T, H> f = q -> {
-            Optional<H> h = exec(q);
-            return h.isPresent() ? h.get() : null;
-        };
-        return submit(query, f, callback);
+        return dispatch(
+            query, Optional.empty(), started -> fetch(query, started, Optional.empty()), callback, false
+        );
     }
 
     @Override
     public Future<Optional<H>> submit(
         T query, Function<T, H> f, Optional<ExecutionCallback<T, H>> callback
     ) {
+        return dispatch(query, Optional.empty(), started -> track(query, QueryExecutors.submit(() -> {
+            started.run();
+            long start = System.nanoTime();
+            try {
+                return Optional.ofNullable(f.apply(query));
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                this.queryLifecycleListeners.forEach(l -> l.onFetch(query, elapsed));
+            }
+        }, this.threadPool), Optional.empty()), callback, false);
+    }
+
+    @Override
+    public Future<Optional<H>> submit(
+        T query, long deadline, TimeUnit unit, Optional<ExecutionCallback<T, H>> callback
+    ) {
+        return dispatch(
+            query, Optional.of(QueryExecutors.deadline(deadline, unit)),
+            started -> fetch(query, started, Optional.empty()), callback, false
+        );
+    }
+
+    @Override
+    public CompletableFuture<Void> drain(
+        Frontier<T> frontier, int window, Optional<ExecutionCallback<T, H>> callback
+    ) {
+        return new FrontierDrain<>(frontier, window, query -> dispatch(
+            query, Optional.empty(), started -> fetch(query, started, Optional.empty()), callback, false
+        )).start();
+    }
+
+    /**
+     * Fetches the query either asynchronously, or in the pool if provider is blocking
+     *
+     * @param started  is called right before the fetch
+     * @param deadline {@link System#nanoTime} by which the query must be done
+     */
+    private CompletableFuture<Optional<H>> fetch(T query, Runnable started, Optional<Long> deadline) {
+        if (!this.asyncProvider.isPresent()) {
+            return track(query, QueryExecutors.submit(() -> {
+                started.run();
+                return fetchNow(query);
+            }, this.threadPool), deadline);
+        }
+        started.run();
+        long start = System.nanoTime();
+        CompletableFuture<Optional<H>> product = this.asyncProvider.get().fetchAsync(query);
+        product.whenComplete((p, t) -> {
+            long elapsed = System.nanoTime() - start;
+            this.queryLifecycleListeners.forEach(l -> l.onFetch(query, elapsed));
+        });
+        CompletableFuture<Optional<H>> tracked = track(query, product, deadline).thenApply(p -> {
+            this.queryLifecycleListeners.forEach(l -> l.onExec(query));
+            return p;
+        });
+        tracked.whenComplete((p, t) -> {
+            if (tracked.isCancelled()) {
+                product.cancel(true);
+            }
+        });
+        return tracked;
+    }
+
+    /**
+     * Bounds the attempt by the timeout of the service and by the deadline,
+     * and reports its failure to listeners
+     *
+     * @param attempt  source future of the attempt, which is completed
+     *                 with {@link TimeoutException} when time is out
+     * @param deadline {@link System#nanoTime} by which the query must be done
+     */
+    private CompletableFuture<Optional<H>> track(
+        T query, CompletableFuture<Optional<H>> attempt, Optional<Long> deadline
+    ) {
+        this.queryLifecycleListeners.forEach(l -> l.onStart(query));
+        if (this.timeoutNanos != Long.MAX_VALUE || deadline.isPresent()) {
+            long due = QueryExecutors.deadline(this.timeoutNanos, TimeUnit.NANOSECONDS);
+            if (deadline.isPresent() && deadline.get() - due < 0) {
+                due = deadline.get();
+            }
+            QueryExecutors.within(attempt, due);
+        }
+        attempt.whenComplete((product, t) -> {
+            if (t == null) {
+                return;
+            }
+            Throwable error = cause(t);
+            if (error instanceof TimeoutException) {
+                this.queryLifecycleListeners.forEach(l -> l.onTimeout(query));
+            }
+            this.queryLifecycleListeners.forEach(l -> l.onError(query, error));
+        });
+        return attempt;
+    }
+
+    /**
+     * Passes the query through the scheduler and tracks its lifecycle
+     *
+     * @param deadline {@link System#nanoTime} by which the query should be started,
+     *                 attempts are not retried if they can't start before it
+     * @param task     starts execution of the query, must invoke
+     *                 given callback right before the execution
+     * @param failing  true if failure of the query fails the returned future,
+     *                 otherwise it's printed and the product is empty
+     */
+    private CompletableFuture<Optional<H>> dispatch(
+        T query,
+        Optional<Long> deadline,
+        Function<Runnable, CompletableFuture<Optional<H>>> task,
+        Optional<ExecutionCallback<T, H>> callback,
+        boolean failing
+    ) {
+        int stripe = this.inFlight.enter();
         if (this.shuttingDown.get()) {
-            throw new IllegalStateException(
-                "service is in shutdown state. submissions are blocked"
-            );
+            this.inFlight.leave(stripe);
+            checkNotShuttingDown();
+        }
+        AtomicBoolean started = new AtomicBoolean(false);
+        AtomicLong queued = new AtomicLong();
+        CompletableFuture<Optional<H>> result = new CompletableFuture<>();
+        AtomicReference<CompletableFuture<Optional<H>>> attempt = new AtomicReference<>();
+        this.submittedQueries.increment();
+        queryLifecycleListeners.forEach(l -> l.onSubmit(query));
+        Supplier<CompletableFuture<Optional<H>>> start = () -> {
+            if (result.isCancelled()) {
+                CompletableFuture<Optional<H>> cancelled = new CompletableFuture<>();
+                cancelled.cancel(false);
+                return cancelled;
+            }
+            CompletableFuture<Optional<H>> current = task.apply(() -> {
+                started.set(true);
+                this.submittedQueries.decrement();
+                this.inProgressQueries.increment();
+                long waited = System.nanoTime() - queued.get();
+                this.queryLifecycleListeners.forEach(l -> l.onQueueWait(query, waited));
+            });
+            attempt.set(current);
+            if (result.isCancelled()) {
+                current.cancel(true);
+            }
+            return current;
+        };
+        result.whenComplete((p, t) -> {
+            CompletableFuture<Optional<H>> current = attempt.get();
+            if (result.isCancelled() && current != null) {
+                current.cancel(true);
+            }
+        });
+        CompletableFuture<Optional<H>> scheduled;
+        try {
+            scheduled = retry(1, () -> {
+                queued.set(System.nanoTime());
+                return deadline.isPresent() ?
+                    this.scheduler.schedule(query, deadline.get(), start) :
+                    this.scheduler.schedule(query, start);
+            }, () -> {
+                if (started.getAndSet(false)) {
+                    this.inProgressQueries.decrement();
+                    this.submittedQueries.increment();
+                }
+            }, deadline);
+        } catch (RuntimeException e) {
+            complete(started.get(), stripe);
+            throw e;
         }
-        Future<Optional<H>> submit = this.threadPool.submit(() -> {
-            this.submittedQueries.decrementAndGet();
-            this.inProgressQueries.incrementAndGet();
-            Optional<H> product = Optional.empty();
+        scheduled.whenComplete((product, error) -> {
+            Optional<H> outcome = Optional.empty();
+            Throwable failure = error != null && (failing || cause(error) instanceof TimeoutException) ?
+                cause(error) : null;
             try {
-                product = Optional.ofNullable(f.apply(query));
+                if (error != null && failure == null) {
+                    throw error;
+                }
+                outcome = error != null ? Optional.empty() : product;
                 if (callback.isPresent()) {
-                    callback.get().call(query, product);
+                    long called = System.nanoTime();
+                    callback.get().call(query, outcome);
+                    long elapsed = System.nanoTime() - called;
+                    this.queryLifecycleListeners.forEach(l -> l.onCallback(query, elapsed));
                 }
             } catch (Throwable t) {
                 t.printStackTrace();
             } finally {
-                this.inProgressQueries.decrementAndGet();
-                if (this.inProgressQueries.get() == 0 && this.shuttingDown.get()) {
-                    synchronized (this.shuttingDown) {
-                        this.shuttingDown.notifyAll();
-                    }
-                }
+                complete(started.get(), stripe);
+            }
+            if (failure != null) {
+                result.completeExceptionally(failure);
+            } else {
+                result.complete(outcome);
             }
-            return product;
         });
-        queryLifecycleListeners.forEach(l -> l.onSubmit(query));
-        this.submittedQueries.incrementAndGet();
-        return submit;
+        return result;
     }
 
     @Override
@@ -90,36 +388,156 @@ public final class ManagedQueryExecutorService<T, H>
 
     @Override
     public Optional<H> exec(T query) {
-        Optional<H> fetch = this.provider.fetch(query);
-        this.queryLifecycleListeners.forEach(l->l.onExec(query));
+        this.queryLifecycleListeners.forEach(l -> l.onStart(query));
+        try {
+            return fetchNow(query);
+        } catch (RuntimeException e) {
+            this.queryLifecycleListeners.forEach(l -> l.onError(query, e));
+            throw e;
+        }
+    }
+
+    private Optional<H> fetchNow(T query) {
+        long start = System.nanoTime();
+        Optional<H> fetch;
+        try {
+            fetch = this.provider.fetch(query);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            this.queryLifecycleListeners.forEach(l -> l.onFetch(query, elapsed));
+        }
+        this.queryLifecycleListeners.forEach(l -> l.onExec(query));
         return fetch;
     }
 
+    /**
+     * Executes the query through the scheduler retrying it according
+     * to the policy, attempts are re-queued to the pool after the backoff
+     */
+    @Override
+    public CompletableFuture<Optional<H>> execAsync(T query) {
+        return execAsync(query, Optional.empty());
+    }
+
+    /**
+     * Attempts are not retried if the next one can't start before the deadline
+     */
+    @Override
+    public CompletableFuture<Optional<H>> execAsync(T query, long deadline) {
+        return execAsync(query, Optional.of(deadline));
+    }
+
+    private CompletableFuture<Optional<H>> execAsync(T query, Optional<Long> deadline) {
+        return dispatch(query, deadline, started -> fetch(query, started, deadline), Optional.empty(), true);
+    }
+
+    /**
+     * Makes the attempt and schedules the next one on the timer
+     * if the policy requires
+     *
+     * @param attempt number of the attempt
+     * @param task    starts the attempt
+     * @param backoff is called when query starts to back off
+     * @param until   {@link System#nanoTime} after which attempts are not started
+     */
+    private CompletableFuture<Optional<H>> retry(
+        int attempt,
+        Supplier<CompletableFuture<Optional<H>>> task,
+        Runnable backoff,
+        Optional<Long> until
+    ) {
+        return task.get().handle((product, error) -> {
+            Throwable cause = cause(error);
+            CompletableFuture<Optional<H>> next = new CompletableFuture<>();
+            long delay = this.retryPolicy.backoff(attempt);
+            if (!this.retryPolicy.shouldRetry(attempt, product, cause)
+                || until.isPresent() && until.get() - System.nanoTime() <= delay) {
+                if (cause != null) {
+                    next.completeExceptionally(cause);
+                } else {
+                    next.complete(product);
+                }
+                return next;
+            }
+            backoff.run();
+            try {
+                this.timer.schedule(() -> {
+                    try {
+                        retry(attempt + 1, task, backoff, until).whenComplete((p, t) -> {
+                            if (t != null) {
+                                next.completeExceptionally(t);
+                            } else {
+                                next.complete(p);
+                            }
+                        });
+                    } catch (Throwable t) {
+                        next.completeExceptionally(t);
+                    }
+                }, delay, TimeUnit.NANOSECONDS);
+            } catch (Throwable t) {
+                next.completeExceptionally(t);
+            }
+            return next;
+        }).thenCompose(Function.identity());
+    }
+
+    private static Throwable cause(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ?
+            error.getCause() : error;
+    }
+
     @Override
     public long countSubmitted() {
-        return submittedQueries.get();
+        return submittedQueries.sum();
     }
 
     @Override
     public long countInProgress() {
-        return inProgressQueries.get();
+        return inProgressQueries.sum();
+    }
+
+    private void checkNotShuttingDown() {
+        if (this.shuttingDown.get()) {
+            throw new IllegalStateException(
+                "service is in shutdown state. submissions are blocked"
+            );
+        }
+    }
+
+    private void complete(boolean started, int stripe) {
+        if (started) {
+            this.inProgressQueries.decrement();
+        } else {
+            this.submittedQueries.decrement();
+        }
+        this.inFlight.leave(stripe);
     }
 
+    /**
+     * Blocks new submissions and waits until all queries in flight are done
+     */
     @Override
     public void shutdown() {
-        if (this.shuttingDown.get()) {
+        shutdown(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Blocks new submissions and waits until all queries in flight are done
+     *
+     * @param timeout maximum time to wait
+     * @param unit    unit of timeout
+     * @return false if some queries are still in flight after the timeout
+     */
+    @Override
+    public boolean shutdown(long timeout, TimeUnit unit) {
+        if (!this.shuttingDown.compareAndSet(false, true)) {
             throw new IllegalStateException("already is in shutdown state");
         }
-        this.shuttingDown.set(true);
-        if (countInProgress() + countSubmitted() == 0) {
-            return;
-        }
-        synchronized (this.shuttingDown) {
-            try {
-                this.shuttingDown.wait();
-            } catch (InterruptedException e) {
-                throw new IllegalStateException("failed to wait", e);
-            }
+        try {
+            return this.inFlight.await(timeout, unit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("failed to wait", e);
         }
     }
 
@@ -0,0 +1,211 @@
+package io.jcp.service.scheduler;
+
+import io.jcp.executor.QueryExecutors;
+import io.jcp.service.QueryScheduler;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Limits the rate and the concurrency of queries per key, e.g. per host
+ * <p>
+ * Queries are sorted into queues by the key. Every queue has its own
+ * token bucket and its own limit of queries in progress, and a query is
+ * started only when both of them allow. Throttled queries wait in the
+ * queue without holding any thread, so a slow host doesn't hold back
+ * queries to the other hosts
+ *
+ * @param <T> is a type of query
+ */
+public final class PolitenessScheduler<T> implements QueryScheduler<T> {
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final Function<T, ?> key;
+    private final double permitsPerNano;
+    private final int burst;
+    private final int concurrency;
+    private final ScheduledExecutorService timer;
+    private final ConcurrentMap<Object, Host> hosts;
+
+    /**
+     * @param key               function to extract key of the query, e.g. host
+     * @param permitsPerSecond  number of queries allowed to start per second for each key
+     * @param burst             number of queries allowed to start at once for each key
+     * @param concurrency       number of queries allowed to be in progress for each key
+     */
+    public PolitenessScheduler(
+        Function<T, ?> key, double permitsPerSecond, int burst, int concurrency
+    ) {
+        this(key, permitsPerSecond, burst, concurrency, QueryExecutors.timer());
+    }
+
+    public PolitenessScheduler(
+        Function<T, ?> key,
+        double permitsPerSecond,
+        int burst,
+        int concurrency,
+        ScheduledExecutorService timer
+    ) {
+        if (permitsPerSecond <= 0 || burst < 1 || concurrency < 1) {
+            throw new IllegalArgumentException("politeness limits must be positive");
+        }
+        this.key = key;
+        this.permitsPerNano = permitsPerSecond / NANOS_PER_SECOND;
+        this.burst = burst;
+        this.concurrency = concurrency;
+        this.timer = timer;
+        this.hosts = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public <V> CompletableFuture<V> schedule(T query, Supplier<CompletableFuture<V>> task) {
+        CompletableFuture<V> result = new CompletableFuture<>();
+        Pending pending = new Pending(() -> {
+            CompletableFuture<V> started;
+            try {
+                started = task.get();
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+                return result;
+            }
+            return started.whenComplete((v, t) -> {
+                if (t != null) {
+                    result.completeExceptionally(t);
+                } else {
+                    result.complete(v);
+                }
+            });
+        });
+        Object k = this.key.apply(query);
+        while (true) {
+            Host host = this.hosts.computeIfAbsent(k, x -> new Host());
+            synchronized (host) {
+                if (!host.retired) {
+                    host.queue.add(pending);
+                    break;
+                }
+            }
+        }
+        drain(k);
+        return result;
+    }
+
+    /**
+     * @return number of queries which wait for permission to start
+     */
+    public int countPending() {
+        int pending = 0;
+        for (Host host : this.hosts.values()) {
+            synchronized (host) {
+                pending += host.queue.size();
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * Starts queries of the key while they are allowed to. Only one thread
+     * drains the key at a time, query completed right away asks that thread
+     * to loop once more instead of draining recursively
+     */
+    private void drain(Object k) {
+        Host host = this.hosts.get(k);
+        if (host == null || host.wip.getAndIncrement() != 0) {
+            return;
+        }
+        do {
+            Pending next;
+            while ((next = poll(k, host)) != null) {
+                next.start().whenComplete((v, t) -> {
+                    synchronized (host) {
+                        host.running--;
+                    }
+                    drain(k);
+                });
+            }
+        } while (host.wip.decrementAndGet() != 0);
+    }
+
+    /**
+     * Takes the query which is allowed to start, otherwise schedules
+     * the wakeup or retires the idle host
+     *
+     * @return query to start or null if none is allowed
+     */
+    private Pending poll(Object k, Host host) {
+        synchronized (host) {
+            if (host.retired) {
+                return null;
+            }
+            host.refill(System.nanoTime());
+            if (!host.queue.isEmpty() && host.running < this.concurrency && host.tokens >= 1) {
+                host.tokens -= 1;
+                host.running++;
+                return host.queue.poll();
+            }
+            double awaited = 0;
+            if (!host.queue.isEmpty() && host.running < this.concurrency) {
+                awaited = 1;
+            } else if (host.queue.isEmpty() && host.running == 0) {
+                awaited = this.burst;
+            }
+            if (host.tokens < awaited && !host.wakeup) {
+                host.wakeup = true;
+                long delay = (long) Math.ceil((awaited - host.tokens) / this.permitsPerNano);
+                this.timer.schedule(() -> {
+                    synchronized (host) {
+                        host.wakeup = false;
+                    }
+                    drain(k);
+                }, delay, TimeUnit.NANOSECONDS);
+            }
+            if (host.queue.isEmpty() && host.running == 0 && host.tokens >= this.burst && !host.wakeup) {
+                host.retired = true;
+                this.hosts.remove(k, host);
+            }
+            return null;
+        }
+    }
+
+    private final class Host {
+        private final Queue<Pending> queue;
+        private final AtomicInteger wip;
+        private double tokens;
+        private long refilled;
+        private int running;
+        private boolean wakeup;
+        private boolean retired;
+
+        private Host() {
+            this.queue = new ArrayDeque<>();
+            this.wip = new AtomicInteger();
+            this.tokens = burst;
+            this.refilled = System.nanoTime();
+        }
+
+        private void refill(long now) {
+            this.tokens = Math.min(burst, this.tokens + (now - this.refilled) * permitsPerNano);
+            this.refilled = now;
+        }
+    }
+
+    private static final class Pending {
+        private final Supplier<CompletableFuture<?>> task;
+
+        private Pending(Supplier<CompletableFuture<?>> task) {
+            this.task = task;
+        }
+
+        private CompletableFuture<?> start() {
+            return this.task.get();
+        }
+    }
+}
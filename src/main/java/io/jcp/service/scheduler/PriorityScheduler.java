@@ -0,0 +1,140 @@
+package io.jcp.service.scheduler;
+
+import io.jcp.executor.QueryExecutors;
+import io.jcp.service.QueryScheduler;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Starts queries in the order of their deadlines
+ * <p>
+ * Scheduler keeps at most {@code concurrency} queries in progress, the rest
+ * wait in the queue ordered by deadline, earliest first. Priority of the query
+ * is expressed by its deadline: urgent queries are submitted with short one,
+ * bulk queries with long one. Deadline of the waiting query is fixed, so
+ * every bulk query eventually becomes the most urgent one and is never starved
+ * by the stream of fresh urgent queries.
+ * <p>
+ * Concurrency should match the number of threads serving queries, so they
+ * are ordered here rather than in the queue of the pool
+ *
+ * @param <T> is a type of query
+ */
+public final class PriorityScheduler<T> implements QueryScheduler<T> {
+    private final int concurrency;
+    private final long defaultDeadlineNanos;
+    private final PriorityQueue<Pending> queue;
+    private final AtomicInteger wip;
+    private long sequence;
+    private int running;
+
+    /**
+     * @param concurrency     number of queries allowed to be in progress
+     * @param defaultDeadline deadline of queries submitted without one
+     * @param unit            unit of default deadline
+     */
+    public PriorityScheduler(int concurrency, long defaultDeadline, TimeUnit unit) {
+        if (concurrency < 1 || defaultDeadline < 0) {
+            throw new IllegalArgumentException("concurrency must be positive and deadline must not be negative");
+        }
+        this.concurrency = concurrency;
+        this.defaultDeadlineNanos = unit.toNanos(defaultDeadline);
+        this.queue = new PriorityQueue<>();
+        this.wip = new AtomicInteger();
+    }
+
+    @Override
+    public <V> CompletableFuture<V> schedule(T query, Supplier<CompletableFuture<V>> task) {
+        return schedule(query, QueryExecutors.deadline(this.defaultDeadlineNanos, TimeUnit.NANOSECONDS), task);
+    }
+
+    @Override
+    public <V> CompletableFuture<V> schedule(
+        T query, long deadline, Supplier<CompletableFuture<V>> task
+    ) {
+        CompletableFuture<V> result = new CompletableFuture<>();
+        Supplier<CompletableFuture<?>> start = () -> {
+            CompletableFuture<V> started;
+            try {
+                started = task.get();
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+                return result;
+            }
+            return started.whenComplete((v, t) -> {
+                if (t != null) {
+                    result.completeExceptionally(t);
+                } else {
+                    result.complete(v);
+                }
+            });
+        };
+        synchronized (this) {
+            this.queue.add(new Pending(deadline, this.sequence++, start));
+        }
+        drain();
+        return result;
+    }
+
+    /**
+     * @return number of queries which wait for permission to start
+     */
+    public synchronized int countPending() {
+        return this.queue.size();
+    }
+
+    /**
+     * Starts queries while they are allowed to. Only one thread drains at
+     * a time, query completed right away asks that thread to loop once more
+     * instead of draining recursively
+     */
+    private void drain() {
+        if (this.wip.getAndIncrement() != 0) {
+            return;
+        }
+        do {
+            Pending next;
+            while ((next = poll()) != null) {
+                next.task.get().whenComplete((v, t) -> {
+                    synchronized (this) {
+                        this.running--;
+                    }
+                    drain();
+                });
+            }
+        } while (this.wip.decrementAndGet() != 0);
+    }
+
+    private synchronized Pending poll() {
+        if (this.queue.isEmpty() || this.running >= this.concurrency) {
+            return null;
+        }
+        this.running++;
+        return this.queue.poll();
+    }
+
+    private static final class Pending implements Comparable<Pending> {
+        private final long deadline;
+        private final long sequence;
+        private final Supplier<CompletableFuture<?>> task;
+
+        private Pending(long deadline, long sequence, Supplier<CompletableFuture<?>> task) {
+            this.deadline = deadline;
+            this.sequence = sequence;
+            this.task = task;
+        }
+
+        @Override
+        public int compareTo(Pending other) {
+            long diff = this.deadline - other.deadline;
+            if (diff != 0) {
+                return diff < 0 ? -1 : 1;
+            }
+            return Long.compare(this.sequence, other.sequence);
+        }
+    }
+}
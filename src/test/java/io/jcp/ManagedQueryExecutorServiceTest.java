@@ -3,23 +3,42 @@ package io.jcp;
 import io.jcp.bean.ExecutionCallback;
 import io.jcp.bean.MockTextProduct;
 import io.jcp.bean.MockTextQuery;
+import io.jcp.executor.QueryExecutors;
 import io.jcp.listener.MockQueryLifecycleListener;
+import io.jcp.metrics.QueryMetrics;
+import io.jcp.provider.MockAsyncTextProvider;
+import io.jcp.provider.MockBatchTextProvider;
 import io.jcp.provider.MockTextProvider;
+import io.jcp.service.Frontier;
 import io.jcp.service.impl.ManagedQueryExecutorService;
+import io.jcp.service.QueryScheduler;
+import io.jcp.service.RetryPolicy;
+import io.jcp.service.scheduler.PolitenessScheduler;
+import io.jcp.service.scheduler.PriorityScheduler;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static java.lang.Thread.sleep;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class ManagedQueryExecutorServiceTest {
 
@@ -126,6 +145,75 @@ public class ManagedQueryExecutorServiceTest {
         assertTrue(true);
     }
 
+    @Test(timeout = 60000)
+    public void testThatShutdownGivesUpAfterTimeout() throws Exception {
+        executorService.submit(new MockTextQuery(), Optional.empty());
+        assertTrue(!executorService.shutdown(MockTextProvider.FETCH_DELAY / 10, TimeUnit.MILLISECONDS));
+        assertEquals(1, executorService.countSubmitted() + executorService.countInProgress());
+    }
+
+    @Test(timeout = 60000)
+    public void testThatShutdownDrainsConcurrentSubmissions() throws Exception {
+        AtomicInteger executed = new AtomicInteger();
+        AtomicInteger accepted = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    for (int j = 0; j < 10; j++) {
+                        executorService.submit(
+                            new MockTextQuery(), Optional.of((q, p) -> executed.incrementAndGet())
+                        );
+                        accepted.incrementAndGet();
+                    }
+                } catch (IllegalStateException ignored) {
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        sleep(MockTextProvider.FETCH_DELAY / 2);
+        assertTrue(executorService.shutdown(1, TimeUnit.MINUTES));
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(accepted.get(), executed.get());
+        assertEquals(0, executorService.countSubmitted() + executorService.countInProgress());
+    }
+
+    @Test(timeout = 60000)
+    public void testThatDrainSubmitsQueriesAddedByCallbacks() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        ManagedQueryExecutorService<MockTextQuery, MockTextProduct> service =
+            new ManagedQueryExecutorService<>(
+                QueryExecutors.fixed(8), Collections.emptyList(), q -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    try {
+                        sleep(10);
+                    } catch (InterruptedException e) {
+                        e.printStackTrace();
+                    }
+                    running.decrementAndGet();
+                    return Optional.of(new MockTextProduct(q.getRequest(), Optional.of(q)));
+                }
+            );
+        Frontier<MockTextQuery> frontier = Frontier.memory();
+        frontier.add(new MockTextQuery("1"));
+        Set<String> fetched = Collections.synchronizedSet(new HashSet<>());
+        service.drain(frontier, 3, Optional.of((q, p) -> {
+            fetched.add(q.getRequest());
+            if (q.getRequest().length() < 5) {
+                frontier.add(new MockTextQuery(q.getRequest() + "0"));
+                frontier.add(new MockTextQuery(q.getRequest() + "1"));
+            }
+        })).get();
+        assertEquals(31, fetched.size());
+        assertEquals(0, frontier.size());
+        assertTrue(maxRunning.get() <= 3);
+        service.shutdown();
+    }
+
     @Test(timeout = 60000, expected = IllegalStateException.class)
     public void testThatCanNotShutdownMoreThanOneTime() throws Exception {
         executorService.shutdown();
@@ -162,6 +250,247 @@ public class ManagedQueryExecutorServiceTest {
         assertEquals("ping_pong", product.getResponse());
     }
 
+    @Test(timeout = 60000)
+    public void testThatAsyncProviderKeepsMoreQueriesInProgressThanThreads() throws Exception {
+        ManagedQueryExecutorService<MockTextQuery, MockTextProduct> service =
+            new ManagedQueryExecutorService<>(
+                this.threadPool, Collections.emptyList(), new MockAsyncTextProvider()
+            );
+        Set<String> result = Collections.synchronizedSet(new HashSet<>());
+        ExecutionCallback<MockTextQuery, MockTextProduct> callback = (t, p) ->
+            result.add(p.get().getResponse());
+        for (int i = 0; i < 10; i++) {
+            service.submit(new MockTextQuery("ping" + i), Optional.of(callback));
+        }
+        sleep(MockAsyncTextProvider.FETCH_DELAY / 2);
+        assertEquals(10, service.countInProgress());
+        service.shutdown();
+        assertEquals(10, result.size());
+    }
+
+    @Test(timeout = 60000)
+    public void testThatQueriesWillBeCoalescedBySize() throws Exception {
+        MockBatchTextProvider provider = new MockBatchTextProvider();
+        ManagedQueryExecutorService<MockTextQuery, MockTextProduct> service =
+            new ManagedQueryExecutorService<>(
+                this.threadPool, Collections.emptyList(), provider, 5, 1, TimeUnit.MINUTES
+            );
+        List<Future<Optional<MockTextProduct>>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(service.submit(new MockTextQuery("ping" + i)));
+        }
+        for (int i = 0; i < 10; i++) {
+            assertEquals("ping" + i + "_pong", futures.get(i).get().get().getResponse());
+        }
+        assertEquals(Arrays.asList(5, 5), new ArrayList<>(provider.batches()));
+    }
+
+    @Test(timeout = 60000)
+    public void testThatLingeringBatchWillBeFlushed() throws Exception {
+        MockBatchTextProvider provider = new MockBatchTextProvider();
+        ManagedQueryExecutorService<MockTextQuery, MockTextProduct> service =
+            new ManagedQueryExecutorService<>(
+                this.threadPool, Collections.emptyList(), provider, 100, 100, TimeUnit.MILLISECONDS
+            );
+        Set<String> result = Collections.synchronizedSet(new HashSet<>());
+        ExecutionCallback<MockTextQuery, MockTextProduct> callback = (t, p) ->
+            result.add(p.get().getResponse());
+        for (int i = 0; i < 3; i++) {
+            service.submit(new MockTextQuery("ping" + i), Optional.of(callback));
+        }
+        service.shutdown();
+        assertEquals(3, result.size());
+        assertEquals(Collections.singletonList(3), new ArrayList<>(provider.batches()));
+    }
+
+    @Test(timeout = 60000)
+    public void testThatThrottledQueriesDoNotHoldThreads() throws Exception {
+        PolitenessScheduler<MockTextQuery> scheduler = new PolitenessScheduler<>(
+            MockTextQuery::getRequest, 0.5, 1, 1
+        );
+        ManagedQueryExecutorService<MockTextQuery, MockTextProduct> service =
+            new ManagedQueryExecutorService<>(
+                this.threadPool, Collections.emptyList(), new MockTextProvider(), scheduler
+            );
+        for (int i = 0; i < 3; i++) {
+            service.submit(new MockTextQuery("slow"));
+        }
+        Future<Optional<MockTextProduct>> fast = service.submit(new MockTextQuery("fast"));
+        assertEquals("fast_pong", fast.get().get().getResponse());
+        assertEquals(2, service.countSubmitted());
+        assertEquals(2, scheduler.countPending());
+    }
+
+    @Test(timeout = 60000)
+    public void testThatQueryWithCloserDeadlineOvertakesBulkQueries() throws Exception {
+        ManagedQueryExecutorService<MockTextQuery, MockTextProduct> service =
+            new ManagedQueryExecutorService<>(
+                this.threadPool, Collections.emptyList(), new MockTextProvider(),
+                new PriorityScheduler<>(2, 1, TimeUnit.HOURS)
+            );
+        List<Future<Optional<MockTextProduct>>> bulk = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            bulk.add(service.submit(new MockTextQuery("bulk" + i)));
+        }
+        Future<Optional<MockTextProduct>> urgent = service.submit(
+            new MockTextQuery("urgent"), 0, TimeUnit.MILLISECONDS, Optional.empty()
+        );
+        assertEquals("urgent_pong", urgent.get().get().getResponse());
+        assertTrue("urgent query must not wait for all bulk queries", !bulk.get(3).isDone());
+        service.shutdown();
+    }
+
+    @Test(timeout = 60000)
+    public void testThatFailedQueryIsRetried() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        ManagedQueryExecutorService<MockTextQuery, MockTextProduct> service =
+            new ManagedQueryExecutorService<>(
+                this.threadPool, Collections.emptyList(), q -> {
+                    if (attempts.incrementAndGet() < 3) {
+                        throw new IllegalStateException("can't fetch " + q.getRequest());
+                    }
+                    return Optional.of(new MockTextProduct(q.getRequest(), Optional.of(q)));
+                },
+                QueryScheduler.immediate(), new RetryPolicy<>(3, 10, 100, TimeUnit.MILLISECONDS)
+            );
+        assertEquals("ping", service.submit(new MockTextQuery("ping")).get().get().getResponse());
+        assertEquals(3, attempts.get());
+        assertEquals(0, service.countSubmitted() + service.countInProgress());
+    }
+
+    @Test(timeout = 60000)
+    public void testThatBackingOffQueriesDoNotHoldThreads() throws Exception {
+        ThreadPoolExecutor single = new ThreadPoolExecutor(
+            1, 1, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>()
+        );
+        ManagedQueryExecutorService<MockTextQuery, MockTextProduct> service =
+            new ManagedQueryExecutorService<>(
+                single, Collections.emptyList(),
+                q -> q.getRequest().equals("empty") ?
+                    Optional.empty() : Optional.of(new MockTextProduct(q.getRequest(), Optional.of(q))),
+                QueryScheduler.immediate(), new RetryPolicy<>(2, 2000, 2000, TimeUnit.MILLISECONDS)
+            );
+        Future<Optional<MockTextProduct>> empty = service.submit(new MockTextQuery("empty"));
+        sleep(100);
+        assertEquals(1, service.countSubmitted());
+        assertEquals("ping", service.submit(new MockTextQuery("ping")).get().get().getResponse());
+        assertTrue(!empty.isDone());
+        assertTrue(!empty.get().isPresent());
+        single.shutdown();
+    }
+
+    @Test(timeout = 60000)
+    public void testThatHungQueryIsCancelledByTimeout() throws Exception {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        ManagedQueryExecutorService<MockTextQuery, MockTextProduct> service =
+            new ManagedQueryExecutorService<>(
+                this.threadPool, Collections.singleton(this.lifecycleListener), q -> {
+                    try {
+                        sleep(60000);
+                    } catch (InterruptedException e) {
+                        interrupted.countDown();
+                    }
+                    return Optional.empty();
+                },
+                QueryScheduler.immediate(), RetryPolicy.none(), 100, TimeUnit.MILLISECONDS
+            );
+        List<Optional<MockTextProduct>> called = new ArrayList<>();
+        Future<Optional<MockTextProduct>> product = service.submit(
+            new MockTextQuery("hung"), Optional.of((q, p) -> called.add(p))
+        );
+        try {
+            product.get();
+            fail("future of timed out query must fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        assertEquals(Collections.singletonList(Optional.empty()), called);
+        interrupted.await();
+        assertEquals(1, this.lifecycleListener.requests(MockQueryLifecycleListener.Event.TIMEOUT).count());
+        assertEquals(0, service.countSubmitted() + service.countInProgress());
+    }
+
+    @Test(timeout = 60000)
+    public void testThatMetricsSplitQueueWaitFromFetch() throws Exception {
+        QueryMetrics<MockTextQuery> metrics = new QueryMetrics<>();
+        ThreadPoolExecutor single = new ThreadPoolExecutor(
+            1, 1, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>()
+        );
+        ManagedQueryExecutorService<MockTextQuery, MockTextProduct> service =
+            new ManagedQueryExecutorService<>(
+                single, Collections.singleton(metrics), new MockTextProvider()
+            );
+        List<Future<Optional<MockTextProduct>>> futures = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            futures.add(service.submit(new MockTextQuery("ping" + i), Optional.of((q, p) -> {
+            })));
+        }
+        for (Future<Optional<MockTextProduct>> future : futures) {
+            future.get();
+        }
+        service.shutdown();
+        single.shutdown();
+        long second = TimeUnit.MILLISECONDS.toNanos(MockTextProvider.FETCH_DELAY);
+        assertEquals(2, metrics.fetch().count());
+        assertEquals(2, metrics.callback().count());
+        assertTrue(metrics.fetch().percentile(0) >= second * 0.9);
+        assertTrue(metrics.queueWait().percentile(0) < second / 2);
+        assertTrue(metrics.queueWait().percentile(1) >= second * 0.9);
+        assertEquals(0, metrics.errorRate(), 0);
+    }
+
+    @Test(timeout = 60000)
+    public void testThatCancelledQueryIsInterrupted() throws Exception {
+        CountDownLatch fetching = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        ManagedQueryExecutorService<MockTextQuery, MockTextProduct> service =
+            new ManagedQueryExecutorService<>(
+                this.threadPool, Collections.emptyList(), q -> {
+                    fetching.countDown();
+                    try {
+                        sleep(60000);
+                    } catch (InterruptedException e) {
+                        interrupted.countDown();
+                    }
+                    return Optional.empty();
+                }
+            );
+        Future<Optional<MockTextProduct>> product = service.submit(new MockTextQuery("hung"));
+        fetching.await();
+        assertTrue(product.cancel(true));
+        interrupted.await();
+        service.shutdown();
+        assertEquals(0, service.countSubmitted() + service.countInProgress());
+    }
+
+    @Test(timeout = 60000)
+    public void testThatErrorRateCountsAttemptsWhichTimedOutBeforeFetch() throws Exception {
+        QueryMetrics<MockTextQuery> metrics = new QueryMetrics<>();
+        ThreadPoolExecutor single = new ThreadPoolExecutor(
+            1, 1, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>()
+        );
+        ManagedQueryExecutorService<MockTextQuery, MockTextProduct> service =
+            new ManagedQueryExecutorService<>(
+                single, Collections.singleton(metrics), new MockTextProvider(),
+                QueryScheduler.immediate(), RetryPolicy.none(), 100, TimeUnit.MILLISECONDS
+            );
+        List<Future<Optional<MockTextProduct>>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            futures.add(service.submit(new MockTextQuery("ping" + i)));
+        }
+        for (Future<Optional<MockTextProduct>> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException | CancellationException e) {
+                // timed out
+            }
+        }
+        service.shutdown();
+        single.shutdown();
+        assertEquals(3, metrics.countTimeouts());
+        assertEquals(1, metrics.errorRate(), 0);
+    }
+
     @Test(timeout = 60000)
     public void testSubmitCounterDecrementsWhenTaskExecuted() throws Exception {
         executorService.exec(new MockTextQuery("ping"));
@@ -0,0 +1,114 @@
+package io.jcp.cache;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+public final class PersistentStoreTest {
+
+    private static final int SEGMENT_SIZE = 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testThatValueWillBeReturnedAfterPut() throws Exception {
+        try (PersistentStore store = new PersistentStore(folder.getRoot().toPath(), SEGMENT_SIZE)) {
+            store.put("ping", bytes("pong"));
+            assertEquals("pong", string(store.get("ping")));
+            assertFalse(store.get("pong").isPresent());
+        }
+    }
+
+    @Test
+    public void testThatValuesSurviveReopen() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        try (PersistentStore store = new PersistentStore(directory, SEGMENT_SIZE)) {
+            for (int i = 0; i < 100; i++) {
+                store.put("ping" + i, bytes("pong" + i));
+            }
+            store.put("ping0", bytes("overwritten"));
+        }
+        try (PersistentStore store = new PersistentStore(directory, SEGMENT_SIZE)) {
+            assertEquals(100, store.size());
+            assertEquals("overwritten", string(store.get("ping0")));
+            assertEquals("pong99", string(store.get("ping99")));
+        }
+    }
+
+    @Test
+    public void testThatEmptyKeyIsRejectedAndFollowingValuesSurviveReopen() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        try (PersistentStore store = new PersistentStore(directory, SEGMENT_SIZE)) {
+            store.put("ping1", bytes("pong1"));
+            try {
+                store.put("", bytes("empty"));
+                fail("empty key must be rejected");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+            store.put("ping2", bytes("pong2"));
+        }
+        try (PersistentStore store = new PersistentStore(directory, SEGMENT_SIZE)) {
+            assertEquals(2, store.size());
+            assertEquals("pong2", string(store.get("ping2")));
+        }
+    }
+
+    @Test
+    public void testThatTornRecordWillBeDroppedOnReopen() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        try (PersistentStore store = new PersistentStore(directory, SEGMENT_SIZE)) {
+            store.put("ping1", bytes("pong1"));
+            store.put("ping2", bytes("pong2"));
+        }
+        Path segment = Files.list(directory).findFirst().get();
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.seek(40);
+            file.write(new byte[]{1, 2, 3});
+        }
+        try (PersistentStore store = new PersistentStore(directory, SEGMENT_SIZE)) {
+            assertEquals("pong1", string(store.get("ping1")));
+            assertFalse(store.get("ping2").isPresent());
+            store.put("ping3", bytes("pong3"));
+            assertEquals("pong3", string(store.get("ping3")));
+        }
+    }
+
+    @Test
+    public void testThatCompactionRemovesGarbageSegments() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        try (PersistentStore store = new PersistentStore(directory, SEGMENT_SIZE)) {
+            for (int i = 0; i < 1000; i++) {
+                store.put("ping" + (i % 10), bytes("pong" + i));
+            }
+            store.compact();
+            assertEquals(10, store.size());
+            assertEquals("pong999", string(store.get("ping9")));
+            assertEquals("pong990", string(store.get("ping0")));
+            assertEquals(true, store.segments() <= 2);
+        }
+        try (PersistentStore store = new PersistentStore(directory, SEGMENT_SIZE)) {
+            assertEquals(10, store.size());
+            assertEquals("pong999", string(store.get("ping9")));
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(Optional<byte[]> value) {
+        return new String(value.get(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,100 @@
+package io.jcp.cache;
+
+import org.junit.Test;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.Thread.sleep;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public final class SegmentedLruCacheTest {
+
+    @Test
+    public void testThatValueWillBeReturnedAfterPut() throws Exception {
+        SegmentedLruCache<String, String> cache = new SegmentedLruCache<>(10);
+        cache.put("ping", "pong");
+        assertEquals(Optional.of("pong"), cache.get("ping"));
+        assertEquals(Optional.empty(), cache.get("pong"));
+    }
+
+    @Test
+    public void testThatSizeDoesNotExceedMaxEntries() throws Exception {
+        SegmentedLruCache<Integer, Integer> cache = new SegmentedLruCache<>(100);
+        for (int i = 0; i < 1000; i++) {
+            cache.put(i, i);
+        }
+        assertTrue(cache.size() <= 100);
+        assertEquals(1000 - cache.size(), cache.stats().getEvictions());
+    }
+
+    @Test
+    public void testThatEntryUsedTwiceSurvivesOneTimeEntries() throws Exception {
+        SegmentedLruCache<String, String> cache = new SegmentedLruCache<>(100);
+        cache.put("hot", "hot");
+        cache.get("hot");
+        for (int i = 0; i < 10000; i++) {
+            cache.put("cold" + i, "cold");
+        }
+        assertEquals(Optional.of("hot"), cache.get("hot"));
+    }
+
+    @Test
+    public void testThatTotalWeightDoesNotExceedMaxWeight() throws Exception {
+        SegmentedLruCache<Integer, String> cache = new SegmentedLruCache<>(
+            1000, 64, (k, v) -> v.length(), 1, TimeUnit.MINUTES
+        );
+        for (int i = 0; i < 100; i++) {
+            cache.put(i, "0123456789");
+        }
+        assertTrue(cache.weight() <= 64);
+        assertTrue(cache.size() <= 6);
+    }
+
+    @Test
+    public void testThatEntryHeavierThanShareOfSegmentIsCached() throws Exception {
+        SegmentedLruCache<Integer, String> cache = new SegmentedLruCache<>(
+            1000, 64, (k, v) -> v.length(), 1, TimeUnit.MINUTES
+        );
+        for (int i = 0; i < 10; i++) {
+            cache.put(i, "0");
+        }
+        String heavy = "0123456789012345678901234567890123456789";
+        cache.put(100, heavy);
+        assertEquals(Optional.of(heavy), cache.get(100));
+        assertTrue(cache.weight() <= 64);
+        cache.put(101, heavy);
+        assertEquals(Optional.of(heavy), cache.get(101));
+        assertEquals(Optional.empty(), cache.get(100));
+        assertTrue(cache.weight() <= 64);
+    }
+
+    @Test(timeout = 30000)
+    public void testThatExpiredEntryWillNotBeReturned() throws Exception {
+        SegmentedLruCache<String, String> cache = new SegmentedLruCache<>(
+            10, 100, TimeUnit.MILLISECONDS
+        );
+        cache.put("ping", "pong");
+        assertTrue(cache.get("ping").isPresent());
+        sleep(200);
+        assertFalse(cache.get("ping").isPresent());
+        assertEquals(1, cache.stats().getExpirations());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testThatStatsCountHitsAndMisses() throws Exception {
+        SegmentedLruCache<String, String> cache = new SegmentedLruCache<>(10);
+        assertEquals(0, cache.stats().getHitRate(), 0);
+        cache.put("ping", "pong");
+        cache.get("ping");
+        cache.get("ping");
+        cache.get("pong");
+        CacheStats stats = cache.stats();
+        assertEquals(2, stats.getHits());
+        assertEquals(1, stats.getMisses());
+        assertEquals(2.0 / 3, stats.getHitRate(), 0.0001);
+    }
+}
@@ -0,0 +1,207 @@
+package io.jcp.executor;
+
+import io.jcp.bean.MockTextProduct;
+import io.jcp.bean.MockTextQuery;
+import io.jcp.pipeline.impl.ManagedPipeline;
+import io.jcp.provider.MockTextProvider;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static java.lang.Thread.sleep;
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeFalse;
+import static org.junit.Assume.assumeTrue;
+
+public final class QueryExecutorsTest {
+
+    @Test(timeout = 30000)
+    public void testThatSlowDependentOfTimedOutFutureDoesNotDelayOtherDeadlines() throws Exception {
+        List<String> threads = new CopyOnWriteArrayList<>();
+        CompletableFuture<String> first = QueryExecutors.within(
+            new CompletableFuture<>(), QueryExecutors.deadline(50, TimeUnit.MILLISECONDS)
+        );
+        first.whenComplete((v, t) -> {
+            threads.add(Thread.currentThread().getName());
+            try {
+                sleep(5000);
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        });
+        long started = System.nanoTime();
+        CompletableFuture<String> second = QueryExecutors.within(
+            new CompletableFuture<>(), QueryExecutors.deadline(100, TimeUnit.MILLISECONDS)
+        );
+        try {
+            second.get();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(2));
+        assertFalse(threads.contains("jcp-timer"));
+    }
+
+    @Test(timeout = 30000)
+    public void testThatBoundedExecutorLimitsConcurrency() throws Exception {
+        ExecutorService executor = QueryExecutors.bounded(Executors.newCachedThreadPool(), 2);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            futures.add(executor.submit(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    sleep(100);
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+                running.decrementAndGet();
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertEquals(2, maxRunning.get());
+    }
+
+    @Test(timeout = 30000, expected = RejectedExecutionException.class)
+    public void testThatFullQueueFailsFast() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = QueryExecutors.fixed(1, 1, OverflowPolicy.FAIL);
+        try {
+            QueryExecutors.submit(() -> await(release), executor);
+            QueryExecutors.submit(() -> await(release), executor);
+            QueryExecutors.submit(() -> await(release), executor);
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testThatQueuedTasksAreCounted() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = QueryExecutors.fixed(1, 10, OverflowPolicy.FAIL);
+        try {
+            List<CompletableFuture<Boolean>> tasks = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                tasks.add(QueryExecutors.submit(() -> await(release), executor));
+            }
+            assertEquals(3, QueryExecutors.countQueued(executor));
+            release.countDown();
+            tasks.forEach(CompletableFuture::join);
+            assertEquals(0, QueryExecutors.countQueued(executor));
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testThatFullQueueShedsOldestTask() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = QueryExecutors.fixed(1, 1, OverflowPolicy.SHED_OLDEST);
+        CompletableFuture<Boolean> running = QueryExecutors.submit(() -> await(release), executor);
+        CompletableFuture<Boolean> shed = QueryExecutors.submit(() -> await(release), executor);
+        CompletableFuture<Boolean> latest = QueryExecutors.submit(() -> await(release), executor);
+        assertTrue(shed.isCancelled());
+        release.countDown();
+        assertTrue(running.get());
+        assertTrue(latest.get());
+        executor.shutdown();
+    }
+
+    @Test(timeout = 30000)
+    public void testThatFullQueueBlocksCaller() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = QueryExecutors.fixed(1, 1, OverflowPolicy.BLOCK);
+        QueryExecutors.submit(() -> await(release), executor);
+        QueryExecutors.submit(() -> await(release), executor);
+        CompletableFuture<CompletableFuture<Boolean>> blocked = CompletableFuture.supplyAsync(
+            () -> QueryExecutors.submit(() -> await(release), executor)
+        );
+        sleep(200);
+        assertFalse(blocked.isDone());
+        release.countDown();
+        assertTrue(blocked.get().get());
+        executor.shutdown();
+    }
+
+    @Test(timeout = 30000)
+    public void testThatFullQueueLetsPoolThreadRunTaskByItself() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = QueryExecutors.fixed(1, 1, OverflowPolicy.BLOCK);
+        try {
+            CompletableFuture<Boolean> nested = QueryExecutors.submit(() -> {
+                QueryExecutors.submit(() -> await(release), executor);
+                Thread worker = Thread.currentThread();
+                return QueryExecutors.submit(() -> Thread.currentThread() == worker, executor).join();
+            }, executor);
+            assertTrue(nested.join());
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testThatCancellationInterruptsTask() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        ExecutorService executor = QueryExecutors.fixed(1);
+        CompletableFuture<Boolean> future = QueryExecutors.submit(() -> {
+            started.countDown();
+            return await(release);
+        }, executor);
+        started.await();
+        future.cancel(true);
+        assertFalse(QueryExecutors.submit(() -> Thread.currentThread().isInterrupted(), executor).get());
+        executor.shutdown();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testThatVirtualExecutorRequiresSupportedRuntime() throws Exception {
+        assumeFalse(QueryExecutors.isVirtualSupported());
+        QueryExecutors.virtual(10);
+    }
+
+    @Test(timeout = 30000)
+    public void testThatPipelineRunsOnVirtualThreads() throws Exception {
+        assumeTrue(QueryExecutors.isVirtualSupported());
+        List<MockTextQuery> queries = IntStream.range(0, 100)
+            .mapToObj(i -> new MockTextQuery("ping" + i))
+            .collect(toList());
+        List<Optional<MockTextProduct>> products = new ManagedPipeline<>(
+            QueryExecutors.virtual(100), new MockTextProvider()
+        ).run(queries).products();
+        assertEquals(100, products.stream().filter(Optional::isPresent).count());
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            latch.await();
+            return true;
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+}
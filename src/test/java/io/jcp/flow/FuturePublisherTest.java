@@ -0,0 +1,62 @@
+package io.jcp.flow;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+
+public final class FuturePublisherTest {
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws Exception {
+        this.executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "emitter"));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        this.executor.shutdownNow();
+    }
+
+    @Test(timeout = 30000)
+    public void testThatItemsAfterPendingFutureAreEmittedOnExecutor() throws Exception {
+        CompletableFuture<String> first = new CompletableFuture<>();
+        List<CompletableFuture<String>> futures = Arrays.asList(first, CompletableFuture.completedFuture("pong"));
+        List<String> threads = new CopyOnWriteArrayList<>();
+        CountDownLatch completed = new CountDownLatch(1);
+        new FuturePublisher<>(futures::iterator, this.executor).subscribe(new Flow.Subscriber<String>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(String item) {
+                threads.add(Thread.currentThread().getName());
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                throwable.printStackTrace();
+            }
+
+            @Override
+            public void onComplete() {
+                completed.countDown();
+            }
+        });
+        Thread completer = new Thread(() -> first.complete("ping"), "completer");
+        completer.start();
+        completed.await();
+        assertEquals(Arrays.asList("emitter", "emitter"), threads);
+    }
+}
@@ -12,7 +12,7 @@ import java.util.stream.Stream;
 public class MockQueryLifecycleListener implements QueryLifecycleListener<MockTextQuery> {
 
     public enum Event {
-        SUBMIT, EXEC
+        SUBMIT, EXEC, TIMEOUT
     }
 
     private final Map<Event, Queue<MockTextQuery>> tasks;
@@ -31,6 +31,11 @@ public class MockQueryLifecycleListener implements QueryLifecycleListener<MockTe
         put(Event.EXEC, request);
     }
 
+    @Override
+    public void onTimeout(MockTextQuery request) {
+        put(Event.TIMEOUT, request);
+    }
+
     public Stream<MockTextQuery> requests(Event event) {
         return tasks.get(event).stream();
     }
@@ -0,0 +1,60 @@
+package io.jcp.metrics;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.Thread.sleep;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public final class LatencyHistogramTest {
+
+    @Test
+    public void testThatPercentilesAreWithinPrecision() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 100_000; i++) {
+            histogram.record(i * 1000);
+        }
+        assertEquals(100_000, histogram.count());
+        assertWithinPrecision(50_000_000L, histogram.percentile(0.5));
+        assertWithinPrecision(99_000_000L, histogram.percentile(0.99));
+        assertWithinPrecision(100_000_000L, histogram.percentile(1));
+    }
+
+    @Test
+    public void testThatBucketsCoverValuesWithoutGaps() throws Exception {
+        for (long value = 0; value < 1_000_000; value += 7) {
+            int index = LatencyHistogram.index(value);
+            assertTrue(value <= LatencyHistogram.highest(index));
+            assertTrue(index == 0 || value > LatencyHistogram.highest(index - 1));
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testThatOldValuesLeaveWindow() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram(200, TimeUnit.MILLISECONDS, 4);
+        histogram.record(1000);
+        assertEquals(1, histogram.count());
+        sleep(400);
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.percentile(0.99));
+    }
+
+    @Test(timeout = 30000)
+    public void testThatSlidingCounterMeasuresRate() throws Exception {
+        SlidingCounter counter = new SlidingCounter(1, TimeUnit.SECONDS, 10);
+        for (int i = 0; i < 50; i++) {
+            counter.increment();
+        }
+        assertEquals(50, counter.count());
+        assertEquals(50.0, counter.rate(), 0.001);
+    }
+
+    private static void assertWithinPrecision(long expected, long actual) {
+        assertTrue(
+            String.format("expected %d but was %d", expected, actual),
+            Math.abs(actual - expected) <= expected / 32
+        );
+    }
+}
@@ -0,0 +1,78 @@
+package io.jcp.pipeline.checkpoint;
+
+import io.jcp.codec.Codec;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public final class CheckpointJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testThatStateSurvivesReopen() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("job.journal");
+        try (CheckpointJournal<String> journal = journal(file)) {
+            journal.pending("ping1");
+            journal.pending("ping2");
+            journal.pending("ping3");
+            journal.done("ping2");
+        }
+        try (CheckpointJournal<String> journal = journal(file)) {
+            assertEquals(Arrays.asList("ping1", "ping3"), journal.pending());
+            assertTrue(journal.isDone("ping2"));
+            assertFalse(journal.isDone("ping1"));
+            assertEquals(1, journal.countDone());
+        }
+    }
+
+    @Test
+    public void testThatRecordsAreSyncedInBackground() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("job.journal");
+        CheckpointJournal<String> journal = new CheckpointJournal<>(
+            file, Codec.utf8(), 10, TimeUnit.MILLISECONDS
+        );
+        journal.pending("ping");
+        journal.done("ping");
+        while (file.toFile().length() == 0) {
+            Thread.sleep(10);
+        }
+        try (CheckpointJournal<String> restored = journal(file)) {
+            assertTrue(restored.isDone("ping"));
+        }
+        journal.close();
+    }
+
+    @Test
+    public void testThatTornRecordIsDropped() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("job.journal");
+        try (CheckpointJournal<String> journal = journal(file)) {
+            journal.pending("ping1");
+            journal.pending("ping2");
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(raf.length() - 1);
+        }
+        try (CheckpointJournal<String> journal = journal(file)) {
+            assertEquals(Arrays.asList("ping1"), journal.pending());
+            journal.pending("ping3");
+        }
+        try (CheckpointJournal<String> journal = journal(file)) {
+            assertEquals(Arrays.asList("ping1", "ping3"), journal.pending());
+        }
+    }
+
+    private static CheckpointJournal<String> journal(Path file) {
+        return new CheckpointJournal<>(file, Codec.utf8(), 1, TimeUnit.MINUTES);
+    }
+}
@@ -4,25 +4,54 @@ import io.jcp.bean.MockIntProduct;
 import io.jcp.bean.MockIntQuery;
 import io.jcp.bean.MockTextProduct;
 import io.jcp.bean.MockTextQuery;
+import io.jcp.codec.Codec;
+import io.jcp.executor.OverflowPolicy;
+import io.jcp.executor.QueryExecutors;
+import io.jcp.flow.Flow;
 import io.jcp.listener.MockQueryLifecycleListener;
+import io.jcp.pipeline.VisitedSet;
+import io.jcp.pipeline.checkpoint.CheckpointJournal;
+import io.jcp.provider.MockAsyncTextProvider;
 import io.jcp.provider.MockIntProvider;
 import io.jcp.provider.MockTextProvider;
 import io.jcp.provider.Provider;
 import io.jcp.service.QueryExecutorService;
 import io.jcp.service.impl.ManagedQueryExecutorService;
+import io.jcp.service.scheduler.PolitenessScheduler;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
+import static java.lang.Thread.sleep;
+import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toSet;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 
 public final class ManagedPipelineTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     private MockTextQuery textQuery;
     private MockTextProduct textProduct;
     private List<MockTextQuery> threeTextQueries;
@@ -221,6 +250,601 @@ public final class ManagedPipelineTest {
         );
     }
 
+    @Test(timeout = 30000)
+    public void testThatEachQueryWillBeFetchedOnlyOnce() throws Exception {
+        AtomicInteger fetches = new AtomicInteger();
+        ManagedPipeline<MockTextQuery, MockTextProduct> pipeline = countingPipeline(fetches)
+            .run(threeTextQueries);
+        pipeline.product();
+        pipeline.product();
+        pipeline.products();
+        assertEquals(3, fetches.get());
+    }
+
+    @Test(timeout = 30000)
+    public void testThatChainedStageReadsMaterializedProducts() throws Exception {
+        AtomicInteger fetches = new AtomicInteger();
+        ManagedPipeline<MockTextQuery, MockTextProduct> pipeline = countingPipeline(fetches)
+            .run(threeTextQueries);
+        pipeline.products();
+        Set<String> actual = pipeline
+            .run(p -> new MockTextQuery(p.getResponse() + "_map"))
+            .products()
+            .stream()
+            .map(p -> p.get().getResponse())
+            .collect(toSet());
+        assertEquals(
+            new HashSet<>(Arrays.asList(
+                "ping1_pong_map_pong", "ping2_pong_map_pong", "ping3_pong_map_pong"
+            )), actual
+        );
+        assertEquals(6, fetches.get());
+    }
+
+    @Test(timeout = 30000)
+    public void testThatUnorderedStreamEmitsFirstCompletedProduct() throws Exception {
+        MockTextQuery slow = new MockTextQuery("slow");
+        MockTextQuery fast = new MockTextQuery("fast");
+        MockTextProduct first = new ManagedPipeline<MockTextQuery, MockTextProduct>(2, q -> {
+            try {
+                sleep(q.equals(slow) ? MockTextProvider.FETCH_DELAY : 0);
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+            return Optional.of(new MockTextProduct(q.getRequest(), Optional.of(q)));
+        }).run(Arrays.asList(slow, fast))
+            .unorderedStream()
+            .findFirst()
+            .get()
+            .get();
+        assertEquals("fast", first.getResponse());
+    }
+
+    @Test(timeout = 30000)
+    public void testThatStreamKeepsQueryOrder() throws Exception {
+        assertEquals(
+            Arrays.asList("ping1_pong", "ping2_pong", "ping3_pong"),
+            pipeline(3)
+                .run(threeTextQueries)
+                .stream()
+                .map(p -> p.get().getResponse())
+                .collect(toList())
+        );
+    }
+
+    @Test(timeout = 30000)
+    public void testThatStreamsReadMaterializedProducts() throws Exception {
+        AtomicInteger fetches = new AtomicInteger();
+        ManagedPipeline<MockTextQuery, MockTextProduct> pipeline = countingPipeline(fetches)
+            .run(threeTextQueries);
+        assertEquals(3, pipeline.unorderedStream().count());
+        assertEquals(3, pipeline.stream().count());
+        assertEquals(3, pipeline.products().size());
+        assertEquals(3, fetches.get());
+    }
+
+    @Test(timeout = 30000)
+    public void testThatAsyncProviderDoesNotHoldThreads() throws Exception {
+        List<MockTextQuery> queries = IntStream.range(0, 20)
+            .mapToObj(i -> new MockTextQuery("ping" + i))
+            .collect(toList());
+        long started = System.currentTimeMillis();
+        List<Optional<MockTextProduct>> products = new ManagedPipeline<>(1, new MockAsyncTextProvider())
+            .run(queries)
+            .products();
+        long elapsed = System.currentTimeMillis() - started;
+        assertEquals(20, products.stream().filter(Optional::isPresent).count());
+        assertTrue(
+            "fetches must run concurrently on a single thread",
+            elapsed < MockAsyncTextProvider.FETCH_DELAY * 3
+        );
+    }
+
+    @Test(timeout = 30000)
+    public void testThatLazySourceIsReadWithinWindow() throws Exception {
+        AtomicInteger read = new AtomicInteger();
+        AtomicInteger maxAhead = new AtomicInteger();
+        AtomicInteger consumed = new AtomicInteger();
+        long count = pipeline(4)
+            .run(IntStream.range(0, 100).mapToObj(i -> {
+                maxAhead.accumulateAndGet(read.incrementAndGet() - consumed.get(), Math::max);
+                return new MockTextQuery("ping" + i);
+            }), 5)
+            .stream()
+            .peek(p -> consumed.incrementAndGet())
+            .filter(Optional::isPresent)
+            .count();
+        assertEquals(100, count);
+        assertTrue("source must not be read ahead of the window", maxAhead.get() <= 5);
+    }
+
+    @Test(timeout = 30000)
+    public void testThatChainedLazyStageFetchesEveryProduct() throws Exception {
+        Set<String> actual = pipeline(3)
+            .run(threeTextQueries.iterator(), 2)
+            .run(p -> new MockTextQuery(p.getResponse() + "_map"))
+            .unorderedStream()
+            .map(p -> p.get().getResponse())
+            .collect(toSet());
+        assertEquals(
+            new HashSet<>(Arrays.asList(
+                "ping1_pong_map_pong", "ping2_pong_map_pong", "ping3_pong_map_pong"
+            )), actual
+        );
+    }
+
+    @Test(timeout = 30000, expected = IllegalStateException.class)
+    public void testThatLazyProductsCanBeReadOnlyOnce() throws Exception {
+        ManagedPipeline<MockTextQuery, MockTextProduct> pipeline = pipeline()
+            .run(threeTextQueries.iterator(), 2);
+        pipeline.products();
+        pipeline.products();
+    }
+
+    @Test(timeout = 30000)
+    public void testThatBoundedQueueBlocksSubmission() throws Exception {
+        List<MockTextQuery> queries = IntStream.range(0, 10)
+            .mapToObj(i -> new MockTextQuery("ping" + i))
+            .collect(toList());
+        List<Optional<MockTextProduct>> products = new ManagedPipeline<>(
+            2, 1, OverflowPolicy.BLOCK, new MockTextProvider()
+        ).run(queries).products();
+        assertEquals(10, products.stream().filter(Optional::isPresent).count());
+    }
+
+    @Test(timeout = 30000)
+    public void testThatPipelineDeadlineDropsHungQueries() throws Exception {
+        AtomicInteger interrupted = new AtomicInteger();
+        MockTextProvider provider = new MockTextProvider();
+        long started = System.currentTimeMillis();
+        List<Optional<MockTextProduct>> products = new ManagedPipeline<MockTextQuery, MockTextProduct>(3, q -> {
+            if (q.getRequest().equals("hung")) {
+                try {
+                    sleep(60000);
+                } catch (InterruptedException e) {
+                    interrupted.incrementAndGet();
+                }
+                return Optional.empty();
+            }
+            return provider.fetch(q);
+        }).within(MockTextProvider.FETCH_DELAY * 3, TimeUnit.MILLISECONDS)
+            .run(Arrays.asList(new MockTextQuery("ping"), new MockTextQuery("hung")))
+            .products();
+        assertTrue(System.currentTimeMillis() - started < 10000);
+        assertEquals(1, products.size());
+        assertEquals("ping_pong", products.get(0).get().getResponse());
+        sleep(100);
+        assertEquals(1, interrupted.get());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testThatDeadlineCanNotBeSetAfterStageIsRun() throws Exception {
+        pipeline()
+            .run(textQuery)
+            .within(MockTextProvider.FETCH_DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    @Test(timeout = 30000)
+    public void testThatDeadlineCarriesThroughUnderlyingPipeline() throws Exception {
+        AtomicInteger interrupted = new AtomicInteger();
+        long started = System.currentTimeMillis();
+        List<Optional<MockIntProduct>> products = pipeline()
+            .within(MockTextProvider.FETCH_DELAY * 3, TimeUnit.MILLISECONDS)
+            .run(textQuery)
+            .run(p -> new MockIntQuery(p.getResponse().length()), new QueryPipeline<MockIntQuery, MockIntProduct>()
+                .using(intService(1, q -> {
+                    try {
+                        sleep(60000);
+                    } catch (InterruptedException e) {
+                        interrupted.incrementAndGet();
+                    }
+                    return Optional.empty();
+                })))
+            .products();
+        assertTrue(System.currentTimeMillis() - started < 10000);
+        assertTrue(products.isEmpty());
+        sleep(100);
+        assertEquals(1, interrupted.get());
+    }
+
+    @Test(timeout = 60000)
+    public void testThatStageFetchesAreRateLimitedByScheduler() throws Exception {
+        List<Long> fetched = new CopyOnWriteArrayList<>();
+        ExecutorService threads = Executors.newFixedThreadPool(4);
+        ManagedQueryExecutorService<Integer, Integer> limited = new ManagedQueryExecutorService<>(
+            threads, Collections.emptyList(), q -> {
+                fetched.add(System.nanoTime());
+                return Optional.of(q);
+            }, new PolitenessScheduler<>(q -> "host", 5, 1, 4)
+        );
+        List<Optional<Integer>> products = new ManagedPipeline<Integer, Integer>(4, Optional::of)
+            .run(Arrays.asList(1, 2, 3, 4, 5))
+            .run(p -> p, new QueryPipeline<Integer, Integer>().using(limited))
+            .products();
+        assertEquals(5, products.size());
+        assertTrue(
+            "five fetches at 5 per second must take at least 800 ms",
+            Collections.max(fetched) - Collections.min(fetched) >= 750_000_000L
+        );
+        limited.shutdown();
+        threads.shutdown();
+    }
+
+    @Test(timeout = 60000)
+    public void testThatStageRunsOnItsOwnExecutor() throws Exception {
+        ExecutorService stage = new ThreadPoolExecutor(
+            1, 1, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(), r -> new Thread(r, "detail-stage")
+        );
+        Set<String> threads = Collections.synchronizedSet(new HashSet<>());
+        AtomicReference<ManagedPipeline<MockIntQuery, MockIntProduct>> details = new AtomicReference<>();
+        AtomicLong queued = new AtomicLong();
+        details.set(pipeline(3)
+            .run(threeTextQueries)
+            .run(p -> {
+                threads.add(Thread.currentThread().getName());
+                queued.accumulateAndGet(details.get().countQueued(), Math::max);
+                try {
+                    sleep(100);
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+                return new MockIntQuery(pingIndex(p.getResponse()));
+            }, new QueryPipeline<MockIntQuery, MockIntProduct>()
+                .using(intService(3, new MockIntProvider())), stage));
+        assertEquals(
+            new HashSet<>(Arrays.asList(1000, 2000, 3000)),
+            details.get().products().stream().map(p -> p.get().getResponse()).collect(toSet())
+        );
+        assertEquals(Collections.singleton("detail-stage"), threads);
+        assertTrue(queued.get() > 0);
+        assertEquals(0, details.get().countQueued());
+        stage.shutdown();
+    }
+
+    @Test(timeout = 60000)
+    public void testThatNextStageStartsAsSoonAsItsProductIsFetched() throws Exception {
+        long started = System.nanoTime();
+        Map<String, Long> fetched = new ConcurrentHashMap<>();
+        List<Optional<String>> products = new ManagedPipeline<String, String>(3, q -> {
+            if (q.equals("slow")) {
+                try {
+                    sleep(2000);
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }
+            fetched.put(q, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            return Optional.of(q + "_");
+        })
+            .run(Arrays.asList("slow", "fast"))
+            .run(p -> p)
+            .products();
+        assertEquals(Arrays.asList(Optional.of("slow__"), Optional.of("fast__")), products);
+        assertTrue(fetched.get("fast_") < 1000);
+        assertTrue(fetched.get("slow_") >= 2000);
+    }
+
+    @Test(timeout = 60000)
+    public void testThatDeepChainDoesNotDeadlockSmallBlockingPool() throws Exception {
+        ManagedPipeline<String, String> pipeline = new ManagedPipeline<String, String>(
+            1, 1, OverflowPolicy.BLOCK, q -> Optional.of(q + "_")
+        ).run(Arrays.asList("a", "b", "c", "d"));
+        for (int i = 0; i < 5; i++) {
+            pipeline = pipeline.run(p -> p);
+        }
+        assertEquals(
+            Arrays.asList("a______", "b______", "c______", "d______"),
+            pipeline.products().stream().map(Optional::get).collect(toList())
+        );
+    }
+
+    @Test(timeout = 60000)
+    public void testThatPublisherEmitsProductsOnDemand() throws Exception {
+        AtomicInteger fetches = new AtomicInteger();
+        Flow.Publisher<Optional<Integer>> publisher = new ManagedPipeline<Integer, Integer>(4, q -> {
+            fetches.incrementAndGet();
+            return Optional.of(q * 10);
+        })
+            .run(IntStream.range(0, 100).boxed(), 2)
+            .publisher();
+        CollectingSubscriber<Optional<Integer>> subscriber = new CollectingSubscriber<>();
+        publisher.subscribe(subscriber);
+        subscriber.request(3);
+        assertEquals(
+            Arrays.asList(Optional.of(0), Optional.of(10), Optional.of(20)),
+            subscriber.take(3)
+        );
+        sleep(100);
+        assertTrue(fetches.get() <= 3 + 2);
+        subscriber.request(Long.MAX_VALUE);
+        assertEquals(97, subscriber.take(97).size());
+        subscriber.completed.await();
+        assertEquals(100, fetches.get());
+    }
+
+    @Test(timeout = 60000)
+    public void testThatQueriesAreRequestedFromPublisherWithinWindow() throws Exception {
+        RangePublisher queries = new RangePublisher(50);
+        List<Integer> products = new ManagedPipeline<Integer, Integer>(4, q -> Optional.of(q + 1))
+            .run(queries, 5)
+            .stream()
+            .map(Optional::get)
+            .collect(toList());
+        assertEquals(IntStream.rangeClosed(1, 50).boxed().collect(toList()), products);
+        assertEquals(1, queries.maxOutstanding.get());
+    }
+
+    @Test(timeout = 60000)
+    public void testThatClosedStreamCancelsSubscriptionToQueries() throws Exception {
+        RangePublisher queries = new RangePublisher(1000);
+        AtomicInteger fetches = new AtomicInteger();
+        try (Stream<Optional<Integer>> products = new ManagedPipeline<Integer, Integer>(4, q -> {
+            fetches.incrementAndGet();
+            return Optional.of(q);
+        }).run(queries, 5).stream()) {
+            assertEquals(3, products.limit(3).count());
+        }
+        assertTrue(queries.cancelled.get());
+        assertTrue(fetches.get() <= 3 + 5);
+    }
+
+    @Test(timeout = 60000)
+    public void testThatNonPositiveDemandFailsSubscription() throws Exception {
+        CollectingSubscriber<Optional<MockTextProduct>> subscriber = new CollectingSubscriber<>();
+        pipeline().run(textQuery).publisher().subscribe(subscriber);
+        subscriber.request(0);
+        subscriber.completed.await();
+        assertTrue(subscriber.error.get() instanceof IllegalArgumentException);
+    }
+
+    @Test(timeout = 60000)
+    public void testThatCrawlFetchesEveryQueryUpToMaxDepth() throws Exception {
+        List<Integer> products = new ManagedPipeline<Integer, Integer>(
+            QueryExecutors.workStealing(4), Optional::of
+        )
+            .crawl(Collections.singletonList(1), p -> Arrays.asList(2 * p, 2 * p + 1), 3)
+            .products()
+            .stream()
+            .map(Optional::get)
+            .sorted()
+            .collect(toList());
+        assertEquals(IntStream.rangeClosed(1, 15).boxed().collect(toList()), products);
+    }
+
+    @Test(timeout = 60000)
+    public void testThatCrawlFetchesVisitedQueriesOnce() throws Exception {
+        AtomicInteger fetches = new AtomicInteger();
+        Set<Integer> products = new ManagedPipeline<Integer, Integer>(4, q -> {
+            fetches.incrementAndGet();
+            return Optional.of(q);
+        })
+            .crawl(Arrays.asList(0, 1), p -> Arrays.asList((p + 1) % 5, (p + 2) % 5), 100)
+            .unorderedStream()
+            .map(Optional::get)
+            .collect(toSet());
+        assertEquals(5, products.size());
+        assertEquals(5, fetches.get());
+    }
+
+    @Test(timeout = 60000)
+    public void testThatCrawlFetchesQueryAtItsMinimumDepth() throws Exception {
+        Map<String, List<String>> graph = new HashMap<>();
+        graph.put("root", Arrays.asList("slow", "fast"));
+        graph.put("slow", Collections.singletonList("shared"));
+        graph.put("fast", Collections.singletonList("long"));
+        graph.put("long", Collections.singletonList("shared"));
+        graph.put("shared", Collections.singletonList("leaf"));
+        Set<String> products = new ManagedPipeline<String, String>(4, q -> {
+            if (q.equals("slow")) {
+                try {
+                    sleep(500);
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }
+            return Optional.of(q);
+        })
+            .crawl(Collections.singletonList("root"), p -> graph.getOrDefault(p, Collections.emptyList()), 3)
+            .unorderedStream()
+            .map(Optional::get)
+            .collect(toSet());
+        assertEquals(new HashSet<>(Arrays.asList("root", "slow", "fast", "long", "shared", "leaf")), products);
+    }
+
+    @Test(timeout = 60000)
+    public void testThatStageChainedToCrawlEmitsProductsWhileCrawling() throws Exception {
+        CountDownLatch read = new CountDownLatch(1);
+        ExecutorService threads = Executors.newFixedThreadPool(2);
+        Iterator<Optional<Integer>> products = new ManagedPipeline<Integer, Integer>(2, Optional::of)
+            .crawl(Collections.singletonList(1), p -> {
+                try {
+                    read.await();
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+                return Collections.singletonList(2);
+            }, 1)
+            .run(p -> p * 10, new QueryPipeline<Integer, Integer>().using(
+                new ManagedQueryExecutorService<>(threads, Collections.emptyList(), Optional::of)
+            ))
+            .stream()
+            .iterator();
+        assertEquals(Optional.of(10), products.next());
+        read.countDown();
+        assertEquals(Optional.of(20), products.next());
+        assertTrue(!products.hasNext());
+        threads.shutdown();
+    }
+
+    @Test(timeout = 60000)
+    public void testThatCrawlSkipsExpansionOfFailedQueries() throws Exception {
+        List<Optional<Integer>> products = new ManagedPipeline<Integer, Integer>(2, q -> {
+            if (q == 2) {
+                throw new IllegalStateException("can't fetch");
+            }
+            return Optional.of(q);
+        })
+            .crawl(Collections.singletonList(1), p -> Arrays.asList(2 * p, 2 * p + 1), 2)
+            .products();
+        assertEquals(
+            new HashSet<>(Arrays.asList(1, 3, 6, 7)),
+            products.stream().map(Optional::get).collect(toSet())
+        );
+    }
+
+    @Test(timeout = 60000)
+    public void testThatCrawlFansOutOnSpecifiedExecutor() throws Exception {
+        ExecutorService fanning = Executors.newSingleThreadExecutor(r -> new Thread(r, "fan-out"));
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        try {
+            List<Optional<Integer>> products = new ManagedPipeline<Integer, Integer>(2, Optional::of)
+                .crawl(Collections.singletonList(1), p -> {
+                    threads.add(Thread.currentThread().getName());
+                    return Arrays.asList(2 * p, 2 * p + 1);
+                }, 2, VisitedSet.concurrent(), fanning)
+                .products();
+            assertEquals(7, products.size());
+            assertEquals(Collections.singleton("fan-out"), threads);
+        } finally {
+            fanning.shutdownNow();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testThatResumeFetchesOnlyQueriesWhichWereNotDone() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("job.journal");
+        List<String> queries = Arrays.asList("ping1", "ping2", "ping3", "ping4");
+        AtomicInteger fetches = new AtomicInteger();
+        try (CheckpointJournal<String> journal = new CheckpointJournal<>(
+            file, Codec.utf8(), 1, TimeUnit.MINUTES
+        )) {
+            List<Optional<String>> products = new ManagedPipeline<String, String>(2, q -> {
+                fetches.incrementAndGet();
+                if (q.equals("ping3")) {
+                    throw new IllegalStateException("can't fetch");
+                }
+                return Optional.of(q + "_pong");
+            }).run(queries, journal).products();
+            assertEquals(3, products.size());
+        }
+        try (CheckpointJournal<String> journal = new CheckpointJournal<>(
+            file, Codec.utf8(), 1, TimeUnit.MINUTES
+        )) {
+            assertEquals(Collections.singletonList("ping3"), journal.pending());
+            ManagedPipeline<String, String> pipeline = new ManagedPipeline<>(2, q -> {
+                fetches.incrementAndGet();
+                return Optional.of(q + "_pong");
+            });
+            assertEquals(
+                Collections.singletonList(Optional.of("ping3_pong")),
+                pipeline.resume(journal).products()
+            );
+            assertTrue(pipeline.run(queries, journal).products().isEmpty());
+            assertTrue(pipeline.resume(journal).products().isEmpty());
+        }
+        assertEquals(5, fetches.get());
+    }
+
+    @Test(timeout = 60000)
+    public void testThatResumeFetchesQueriesWithEmptyProductAgain() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("job.journal");
+        try (CheckpointJournal<String> journal = new CheckpointJournal<>(
+            file, Codec.utf8(), 1, TimeUnit.MINUTES
+        )) {
+            new ManagedPipeline<String, String>(2, q -> q.equals("ping2") ?
+                Optional.empty() : Optional.of(q + "_pong")
+            ).run(Arrays.asList("ping1", "ping2"), journal).products();
+        }
+        try (CheckpointJournal<String> journal = new CheckpointJournal<>(
+            file, Codec.utf8(), 1, TimeUnit.MINUTES
+        )) {
+            assertEquals(Collections.singletonList("ping2"), journal.pending());
+            assertEquals(
+                Collections.singletonList(Optional.of("ping2_pong")),
+                new ManagedPipeline<String, String>(2, q -> Optional.of(q + "_pong")).resume(journal).products()
+            );
+        }
+    }
+
+    private static final class CollectingSubscriber<V> implements Flow.Subscriber<V> {
+        private final BlockingQueue<V> items = new LinkedBlockingQueue<>();
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private final AtomicReference<Throwable> error = new AtomicReference<>();
+        private volatile Flow.Subscription subscription;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(V item) {
+            this.items.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            this.error.set(throwable);
+            this.completed.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            this.completed.countDown();
+        }
+
+        private void request(long n) {
+            this.subscription.request(n);
+        }
+
+        private List<V> take(int count) throws InterruptedException {
+            List<V> taken = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                taken.add(this.items.take());
+            }
+            return taken;
+        }
+    }
+
+    private static final class RangePublisher implements Flow.Publisher<Integer> {
+        private final int count;
+        private final AtomicLong maxOutstanding = new AtomicLong();
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+
+        private RangePublisher(int count) {
+            this.count = count;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super Integer> subscriber) {
+            AtomicLong outstanding = new AtomicLong();
+            AtomicInteger next = new AtomicInteger();
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public synchronized void request(long n) {
+                    this.emit(n);
+                }
+
+                @Override
+                public void cancel() {
+                    cancelled.set(true);
+                }
+
+                private void emit(long n) {
+                    maxOutstanding.accumulateAndGet(outstanding.addAndGet(n), Math::max);
+                    while (outstanding.get() > 0 && next.get() < count) {
+                        outstanding.decrementAndGet();
+                        subscriber.onNext(next.getAndIncrement());
+                    }
+                    if (next.get() == count) {
+                        next.incrementAndGet();
+                        subscriber.onComplete();
+                    }
+                }
+            });
+        }
+    }
+
     private static QueryExecutorService<MockTextQuery, MockTextProduct> textService() {
         return textService(1, new MockTextProvider());
     }
@@ -253,7 +877,6 @@ public final class ManagedPipelineTest {
         return Integer.parseInt(response.substring(pingIndex, pingIndex + 1));
     }
 
-
     private static ManagedPipeline<MockTextQuery, MockTextProduct> pipeline() {
         return pipeline(1);
     }
@@ -262,4 +885,13 @@ public final class ManagedPipelineTest {
         return new ManagedPipeline<>(threads, new MockTextProvider());
     }
 
+    private static ManagedPipeline<MockTextQuery, MockTextProduct> countingPipeline(
+        AtomicInteger fetches) {
+        MockTextProvider provider = new MockTextProvider();
+        return new ManagedPipeline<>(3, q -> {
+            fetches.incrementAndGet();
+            return provider.fetch(q);
+        });
+    }
+
 }
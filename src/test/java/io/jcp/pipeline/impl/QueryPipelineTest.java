@@ -4,7 +4,9 @@ import io.jcp.bean.MockIntProduct;
 import io.jcp.bean.MockIntQuery;
 import io.jcp.bean.MockTextProduct;
 import io.jcp.bean.MockTextQuery;
+import io.jcp.flow.Flow;
 import io.jcp.listener.MockQueryLifecycleListener;
+import io.jcp.provider.MockAsyncTextProvider;
 import io.jcp.provider.MockIntProvider;
 import io.jcp.provider.MockTextProvider;
 import io.jcp.provider.Provider;
@@ -61,6 +63,42 @@ public final class QueryPipelineTest {
     }
 
 
+    @Test(timeout = 30000)
+    public void testThatPublisherEmitsTheProduct() throws Exception {
+        List<Optional<MockTextProduct>> products = new ArrayList<>();
+        AtomicBoolean completed = new AtomicBoolean();
+        new QueryPipeline<>()
+            .using(QueryPipelineTest.textService())
+            .run(textQuery)
+            .publisher()
+            .subscribe(new Flow.Subscriber<Optional<MockTextProduct>>() {
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    subscription.request(10);
+                }
+
+                @Override
+                public void onNext(Optional<MockTextProduct> item) {
+                    products.add(item);
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    throwable.printStackTrace();
+                }
+
+                @Override
+                public void onComplete() {
+                    completed.set(true);
+                }
+            });
+        while (!completed.get()) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, products.size());
+        assertEquals("ping_pong", products.get(0).get().getResponse());
+    }
+
     @Test(timeout = 30000)
     public void testThatCallbackAfterQueryIsDoneWillBeInvokedWithProduct() throws Exception {
         Set<String> result = new HashSet<>();
@@ -186,6 +224,19 @@ public final class QueryPipelineTest {
         );
     }
 
+    @Test(timeout = 30000)
+    public void testThatProductWillBeFetchedAsynchronously() throws Exception {
+        Set<String> result = Collections.synchronizedSet(new HashSet<>());
+        Optional<MockTextProduct> product = new QueryPipeline<>()
+            .using(QueryPipelineTest.textService(1, new MockAsyncTextProvider()))
+            .on((q, p) -> result.add(q.getRequest()))
+            .run(textQuery)
+            .productAsync()
+            .get();
+        assertEquals("ping_pong", product.get().getResponse());
+        assertEquals(Collections.singleton("ping"), result);
+    }
+
     private static QueryExecutorService<MockTextQuery, MockTextProduct> textService() {
         return textService(1, new MockTextProvider());
     }
@@ -0,0 +1,75 @@
+package io.jcp.pipeline.visited;
+
+import io.jcp.codec.Codec;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public final class BloomVisitedSetTest {
+    private static final int QUERIES = 100_000;
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testThatVisitedQueryIsNeverAdmittedAgain() throws Exception {
+        BloomVisitedSet<String> visited = set();
+        for (int i = 0; i < QUERIES; i++) {
+            visited.add("http://ping/" + i);
+        }
+        for (int i = 0; i < QUERIES; i++) {
+            assertTrue(visited.contains("http://ping/" + i));
+            assertFalse(visited.add("http://ping/" + i));
+        }
+    }
+
+    @Test
+    public void testThatFalsePositiveRateIsKept() throws Exception {
+        BloomVisitedSet<String> visited = set();
+        for (int i = 0; i < QUERIES; i++) {
+            visited.add("http://ping/" + i);
+        }
+        int skipped = 0;
+        for (int i = 0; i < QUERIES; i++) {
+            if (visited.contains("http://pong/" + i)) {
+                skipped++;
+            }
+        }
+        assertTrue("too many false positives: " + skipped, skipped < QUERIES * FALSE_POSITIVE_RATE * 1.5);
+    }
+
+    @Test
+    public void testThatSetIsMuchSmallerThanQueries() throws Exception {
+        assertTrue(set().sizeInBytes() < QUERIES * 2);
+    }
+
+    @Test
+    public void testThatSetSurvivesSaveAndLoad() throws Exception {
+        BloomVisitedSet<String> visited = set();
+        for (int i = 0; i < 1000; i++) {
+            visited.add("http://ping/" + i);
+        }
+        Path file = folder.getRoot().toPath().resolve("visited.bloom");
+        visited.save(file);
+        BloomVisitedSet<String> loaded = BloomVisitedSet.load(file, Codec.utf8());
+        for (int i = 0; i < 1000; i++) {
+            assertFalse(loaded.add("http://ping/" + i));
+        }
+        assertTrue(loaded.add("http://pong/0"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testThatUnknownFileIsRejected() throws Exception {
+        BloomVisitedSet.load(folder.newFile().toPath(), Codec.utf8());
+    }
+
+    private static BloomVisitedSet<String> set() {
+        return new BloomVisitedSet<>(QUERIES, FALSE_POSITIVE_RATE, Codec.utf8());
+    }
+}
@@ -0,0 +1,31 @@
+package io.jcp.provider;
+
+import io.jcp.bean.MockTextProduct;
+import io.jcp.bean.MockTextQuery;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public final class MockAsyncTextProvider implements AsyncProvider<MockTextQuery, MockTextProduct> {
+
+    public static final int FETCH_DELAY = 1000;
+
+    private final ScheduledExecutorService timer;
+
+    public MockAsyncTextProvider() {
+        this.timer = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @Override
+    public CompletableFuture<Optional<MockTextProduct>> fetchAsync(MockTextQuery query) {
+        CompletableFuture<Optional<MockTextProduct>> future = new CompletableFuture<>();
+        timer.schedule(() -> future.complete(Optional.of(new MockTextProduct(
+                query.getRequest() + MockTextProvider.DEFAULT_RESPONSE, Optional.of(query)
+            ))), FETCH_DELAY, TimeUnit.MILLISECONDS
+        );
+        return future;
+    }
+}
@@ -0,0 +1,34 @@
+package io.jcp.provider;
+
+import io.jcp.bean.MockTextProduct;
+import io.jcp.bean.MockTextQuery;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static java.util.stream.Collectors.toList;
+
+public final class MockBatchTextProvider implements BatchProvider<MockTextQuery, MockTextProduct> {
+
+    private final Queue<Integer> batches;
+
+    public MockBatchTextProvider() {
+        this.batches = new ConcurrentLinkedQueue<>();
+    }
+
+    @Override
+    public List<Optional<MockTextProduct>> fetchAll(List<MockTextQuery> queries) {
+        this.batches.add(queries.size());
+        return queries.stream()
+            .map(q -> Optional.of(new MockTextProduct(
+                q.getRequest() + MockTextProvider.DEFAULT_RESPONSE, Optional.of(q)
+            )))
+            .collect(toList());
+    }
+
+    public Queue<Integer> batches() {
+        return batches;
+    }
+}
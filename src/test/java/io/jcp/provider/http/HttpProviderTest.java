@@ -0,0 +1,193 @@
+package io.jcp.provider.http;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public final class HttpProviderTest {
+    private MockHttpServer server;
+    private HttpProvider provider;
+
+    @After
+    public void tearDown() throws Exception {
+        if (provider != null) {
+            provider.close();
+        }
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testThatConnectionIsKeptAliveBetweenFetches() throws Exception {
+        server = new MockHttpServer();
+        provider = new HttpProvider();
+        for (int i = 0; i < 20; i++) {
+            HttpResponse response = provider.fetch(new HttpRequest(server.uri("/echo/ping" + i))).get();
+            assertEquals(200, response.getStatus());
+            assertEquals("ping" + i, response.getBodyAsString());
+            assertEquals("text/plain; charset=utf-8", response.header("content-type").get());
+        }
+        assertEquals(1, provider.countConnections());
+        assertEquals(1, server.countConnections());
+    }
+
+    @Test(timeout = 30000)
+    public void testThatConcurrentFetchesArePipelinedWithinConnectionLimit() throws Exception {
+        server = new MockHttpServer(20, Integer.MAX_VALUE);
+        provider = new HttpProvider(2, 4, 30, TimeUnit.SECONDS);
+        List<CompletableFuture<Optional<HttpResponse>>> products = IntStream.range(0, 40)
+            .mapToObj(i -> provider.fetchAsync(new HttpRequest(server.uri("/echo/ping" + i))))
+            .collect(toList());
+        for (int i = 0; i < products.size(); i++) {
+            assertEquals("ping" + i, products.get(i).get().get().getBodyAsString());
+        }
+        assertEquals(2, server.countConnections());
+        assertEquals(40, server.countRequests());
+        assertTrue(server.countPipelined() > 0);
+    }
+
+    @Test(timeout = 30000)
+    public void testThatBodiesOfAllFramingsAreRead() throws Exception {
+        server = new MockHttpServer();
+        provider = new HttpProvider(1, 4, 30, TimeUnit.SECONDS);
+        CompletableFuture<Optional<HttpResponse>> chunked = provider.fetchAsync(new HttpRequest(server.uri("/chunked")));
+        CompletableFuture<Optional<HttpResponse>> close = provider.fetchAsync(new HttpRequest(server.uri("/close")));
+        CompletableFuture<Optional<HttpResponse>> eof = provider.fetchAsync(new HttpRequest(server.uri("/eof")));
+        CompletableFuture<Optional<HttpResponse>> missing = provider.fetchAsync(new HttpRequest(server.uri("/missing")));
+        assertEquals("hello world", chunked.get().get().getBodyAsString());
+        assertEquals("bye", close.get().get().getBodyAsString());
+        assertEquals("until close", eof.get().get().getBodyAsString());
+        assertEquals(404, missing.get().get().getStatus());
+        assertEquals(3, provider.countConnections());
+    }
+
+    @Test(timeout = 30000)
+    public void testThatBodyIsSent() throws Exception {
+        server = new MockHttpServer();
+        provider = new HttpProvider();
+        HttpResponse response = provider.fetch(new HttpRequest(
+            "POST", server.uri("/echo/"), Collections.singletonMap("X-Id", "1"),
+            "pong".getBytes(StandardCharsets.UTF_8)
+        )).get();
+        assertEquals("pong", response.getBodyAsString());
+    }
+
+    @Test(timeout = 30000)
+    public void testThatRequestIsSentAgainWhenServerDropsConnection() throws Exception {
+        server = new MockHttpServer(0, 1);
+        provider = new HttpProvider(1, 1, 30, TimeUnit.SECONDS);
+        for (int i = 0; i < 5; i++) {
+            assertEquals("ping" + i, provider.fetch(new HttpRequest(server.uri("/echo/ping" + i))).get().getBodyAsString());
+        }
+        assertEquals(5, server.countConnections());
+    }
+
+    @Test(timeout = 30000)
+    public void testThatFetchFailsWhenServerNeverResponds() throws Exception {
+        server = new MockHttpServer();
+        provider = new HttpProvider();
+        assertFailed(provider.fetchAsync(new HttpRequest(server.uri("/drop"))), IllegalStateException.class);
+        assertEquals("idempotent request must be retried once", 2, server.countRequests());
+        assertFailed(provider.fetchAsync(new HttpRequest(
+            "POST", server.uri("/drop"), Collections.emptyMap(), new byte[0]
+        )), IllegalStateException.class);
+        assertEquals("non-idempotent request must not be retried", 3, server.countRequests());
+        assertEquals("ping", provider.fetch(new HttpRequest(server.uri("/echo/ping"))).get().getBodyAsString());
+    }
+
+    @Test(timeout = 30000)
+    public void testThatMalformedResponseFailsFetchBeforeTimeout() throws Exception {
+        server = new MockHttpServer();
+        provider = new HttpProvider(1, 1, 1, TimeUnit.HOURS);
+        assertFailed(provider.fetchAsync(new HttpRequest(server.uri("/negative"))), IllegalStateException.class);
+        assertEquals("ping", provider.fetch(new HttpRequest(server.uri("/echo/ping"))).get().getBodyAsString());
+    }
+
+    @Test(timeout = 30000)
+    public void testThatSlowFetchTimesOut() throws Exception {
+        server = new MockHttpServer(5000, Integer.MAX_VALUE);
+        provider = new HttpProvider(1, 1, 100, TimeUnit.MILLISECONDS);
+        assertFailed(provider.fetchAsync(new HttpRequest(server.uri("/echo/ping"))), TimeoutException.class);
+    }
+
+    @Test(timeout = 30000)
+    public void testThatTimeoutOfPipelinedFetchIsChargedToItOnly() throws Exception {
+        server = new MockHttpServer();
+        provider = new HttpProvider(1, 3, 500, TimeUnit.MILLISECONDS);
+        CompletableFuture<Optional<HttpResponse>> fast = provider.fetchAsync(new HttpRequest(server.uri("/echo/fast")));
+        CompletableFuture<Optional<HttpResponse>> slow = provider.fetchAsync(new HttpRequest(server.uri("/slow/slow")));
+        assertEquals("fast", fast.get().get().getBodyAsString());
+        Thread.sleep(250);
+        CompletableFuture<Optional<HttpResponse>> behind = provider.fetchAsync(new HttpRequest(server.uri("/echo/behind")));
+        assertFailed(slow, TimeoutException.class);
+        assertEquals("behind", behind.get().get().getBodyAsString());
+        assertEquals(2, provider.countConnections());
+    }
+
+    @Test(timeout = 30000)
+    public void testThatHostWithoutConnectionsIsForgotten() throws Exception {
+        server = new MockHttpServer();
+        provider = new HttpProvider();
+        assertEquals("bye", provider.fetch(new HttpRequest(server.uri("/close"))).get().getBodyAsString());
+        assertFailed(
+            provider.fetchAsync(new HttpRequest(URI.create("http://unknown.invalid/"))), IllegalStateException.class
+        );
+        while (provider.countHosts() > 0) {
+            Thread.sleep(100);
+        }
+        assertEquals("ping", provider.fetch(new HttpRequest(server.uri("/echo/ping"))).get().getBodyAsString());
+        assertEquals(1, provider.countHosts());
+    }
+
+    @Test(timeout = 30000)
+    public void testThatFetchFailsAfterClose() throws Exception {
+        provider = new HttpProvider();
+        provider.close();
+        server = new MockHttpServer();
+        assertFailed(provider.fetchAsync(new HttpRequest(server.uri("/echo/ping"))), IllegalStateException.class);
+    }
+
+    @Test
+    public void testThatLineBreaksInRequestHeadAreRejected() throws Exception {
+        URI uri = URI.create("http://127.0.0.1/echo/ping");
+        List<Runnable> requests = Arrays.asList(
+            () -> new HttpRequest("GET /admin HTTP/1.1\r\nX:", uri, Collections.emptyMap(), new byte[0]),
+            () -> new HttpRequest("GET", uri, Collections.singletonMap("X-Id\n", "1"), new byte[0]),
+            () -> new HttpRequest("GET", uri, Collections.singletonMap("X-Id", "1\r\nX-Injected: 1"), new byte[0])
+        );
+        for (Runnable request : requests) {
+            try {
+                request.run();
+                fail("request with line break must be rejected");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    private static void assertFailed(CompletableFuture<?> future, Class<? extends Throwable> cause) throws Exception {
+        try {
+            future.get();
+            fail("fetch must fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause().toString(), cause.isInstance(e.getCause()));
+        }
+    }
+}
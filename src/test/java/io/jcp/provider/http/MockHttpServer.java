@@ -0,0 +1,169 @@
+package io.jcp.provider.http;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process HTTP/1.1 server which serves pipelined requests of a connection in order
+ * <p>
+ * /echo/x responds with x or with request body, /slow/x responds with x after a second,
+ * /chunked responds with chunked body,
+ * /eof responds with body until close, /close responds with Connection: close,
+ * /negative responds with negative Content-Length, /drop closes the connection without response
+ */
+public final class MockHttpServer implements Closeable {
+    private static final long SLOW_DELAY = 1000;
+
+    private final ServerSocket socket;
+    private final long delay;
+    private final int responsesPerConnection;
+    private final AtomicInteger connections;
+    private final AtomicInteger requests;
+    private final AtomicInteger pipelined;
+
+    public MockHttpServer() throws IOException {
+        this(0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param delay                  delay of every response in ms
+     * @param responsesPerConnection number of responses after which connection is silently closed
+     */
+    public MockHttpServer(long delay, int responsesPerConnection) throws IOException {
+        this.socket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        this.delay = delay;
+        this.responsesPerConnection = responsesPerConnection;
+        this.connections = new AtomicInteger();
+        this.requests = new AtomicInteger();
+        this.pipelined = new AtomicInteger();
+        Thread acceptor = new Thread(this::accept, "mock-http-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public URI uri(String path) {
+        return URI.create("http://127.0.0.1:" + this.socket.getLocalPort() + path);
+    }
+
+    public int countConnections() {
+        return connections.get();
+    }
+
+    public int countRequests() {
+        return requests.get();
+    }
+
+    /**
+     * @return number of requests which were received before the previous response was sent
+     */
+    public int countPipelined() {
+        return pipelined.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.socket.close();
+    }
+
+    private void accept() {
+        while (!this.socket.isClosed()) {
+            try {
+                Socket client = this.socket.accept();
+                this.connections.incrementAndGet();
+                Thread handler = new Thread(() -> serve(client), "mock-http-connection");
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket client) {
+        try (Socket s = client) {
+            InputStream in = new BufferedInputStream(s.getInputStream());
+            OutputStream out = s.getOutputStream();
+            for (int served = 0; served < this.responsesPerConnection; served++) {
+                String head = readHead(in);
+                if (head == null) {
+                    return;
+                }
+                this.requests.incrementAndGet();
+                String[] lines = head.split("\r\n");
+                String path = lines[0].split(" ")[1];
+                Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+                for (int i = 1; i < lines.length; i++) {
+                    int colon = lines[i].indexOf(':');
+                    headers.put(lines[i].substring(0, colon).trim(), lines[i].substring(colon + 1).trim());
+                }
+                byte[] body = new byte[Integer.parseInt(headers.getOrDefault("Content-Length", "0"))];
+                for (int read = 0; read < body.length; ) {
+                    read += in.read(body, read, body.length - read);
+                }
+                if (in.available() > 0) {
+                    this.pipelined.incrementAndGet();
+                }
+                Thread.sleep(path.startsWith("/slow/") ? SLOW_DELAY : this.delay);
+                if (path.startsWith("/drop")) {
+                    return;
+                }
+                out.write(respond(path, body).getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                if (path.startsWith("/eof") || path.startsWith("/close")) {
+                    return;
+                }
+            }
+        } catch (IOException | InterruptedException e) {
+            // connection is closed by client
+        }
+    }
+
+    private static String respond(String path, byte[] body) {
+        if (path.startsWith("/echo/") || path.startsWith("/slow/")) {
+            String echo = body.length > 0 ? new String(body, StandardCharsets.UTF_8) : path.substring(6);
+            return "HTTP/1.1 200 OK\r\nContent-Type: text/plain; charset=utf-8\r\nContent-Length: "
+                + echo.getBytes(StandardCharsets.UTF_8).length + "\r\n\r\n" + echo;
+        }
+        if (path.startsWith("/chunked")) {
+            return "HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n"
+                + "6\r\nhello \r\n5;ext=1\r\nworld\r\n0\r\nX-Trailer: 1\r\n\r\n";
+        }
+        if (path.startsWith("/eof")) {
+            return "HTTP/1.1 200 OK\r\n\r\nuntil close";
+        }
+        if (path.startsWith("/close")) {
+            return "HTTP/1.1 200 OK\r\nConnection: close\r\nContent-Length: 3\r\n\r\nbye";
+        }
+        if (path.startsWith("/negative")) {
+            return "HTTP/1.1 200 OK\r\nContent-Length: -1\r\n\r\nbody";
+        }
+        return "HTTP/1.1 404 Not Found\r\nContent-Length: 0\r\n\r\n";
+    }
+
+    private static String readHead(InputStream in) throws IOException {
+        ByteArrayOutputStream head = new ByteArrayOutputStream();
+        int matched = 0;
+        while (matched < 4) {
+            int b = in.read();
+            if (b < 0) {
+                return null;
+            }
+            head.write(b);
+            matched = (b == '\r' || b == '\n') && "\r\n\r\n".charAt(matched) == b ? matched + 1 : 0;
+        }
+        String s = new String(head.toByteArray(), StandardCharsets.ISO_8859_1);
+        return s.substring(0, s.length() - 4);
+    }
+}
@@ -0,0 +1,51 @@
+package io.jcp.provider.http;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public final class ResponseParserTest {
+
+    @Test
+    public void testThatNegativeLengthsAreRejected() throws Exception {
+        assertRejected(new ResponseParser(), "HTTP/1.1 200 OK\r\nContent-Length: -1\r\n\r\nbody");
+        assertRejected(new ResponseParser(), "HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n-1\r\nbody");
+    }
+
+    @Test
+    public void testThatBodyLargerThanLimitIsRejected() throws Exception {
+        assertRejected(new ResponseParser(4), "HTTP/1.1 200 OK\r\nContent-Length: 5\r\n\r\nhello");
+        assertRejected(new ResponseParser(4), "HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n"
+            + "3\r\nhel\r\n2\r\nlo\r\n0\r\n\r\n");
+        assertRejected(new ResponseParser(4), "HTTP/1.1 200 OK\r\n\r\nhello");
+    }
+
+    @Test
+    public void testThatBodyWithinLimitIsRead() throws Exception {
+        Optional<HttpResponse> response = new ResponseParser(5).parse(
+            bytes("HTTP/1.1 200 OK\r\nContent-Length: 5\r\n\r\nhello"), false
+        );
+        assertEquals("hello", response.get().getBodyAsString());
+    }
+
+    private static void assertRejected(ResponseParser parser, String response) {
+        try {
+            parser.parse(bytes(response), false);
+            parser.close();
+            fail("response must be rejected: " + response);
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("negative") || e.getMessage().contains("larger"));
+        }
+    }
+
+    private static ByteBuffer bytes(String s) {
+        return ByteBuffer.wrap(s.getBytes(StandardCharsets.ISO_8859_1));
+    }
+}
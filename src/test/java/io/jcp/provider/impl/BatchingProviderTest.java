@@ -0,0 +1,37 @@
+package io.jcp.provider.impl;
+
+import io.jcp.bean.MockTextProduct;
+import io.jcp.bean.MockTextQuery;
+import io.jcp.provider.MockBatchTextProvider;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.Thread.sleep;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public final class BatchingProviderTest {
+
+    @Test(timeout = 30000)
+    public void testThatLateLingerFlushDoesNotFlushNewerBatch() throws Exception {
+        MockBatchTextProvider origin = new MockBatchTextProvider();
+        BatchingProvider<MockTextQuery, MockTextProduct> batching =
+            new BatchingProvider<>(origin, Runnable::run, 2, 300, TimeUnit.MILLISECONDS);
+        CompletableFuture<Optional<MockTextProduct>> newer;
+        synchronized (batching) {
+            batching.fetchAsync(new MockTextQuery("ping1"));
+            // linger of the first batch elapses and its flush waits for the lock
+            sleep(500);
+            batching.fetchAsync(new MockTextQuery("ping2"));
+            newer = batching.fetchAsync(new MockTextQuery("ping3"));
+        }
+        sleep(100);
+        assertFalse("newer batch must linger on its own", newer.isDone());
+        assertEquals("ping3_pong", newer.get().get().getResponse());
+        assertEquals(Arrays.asList(2, 1), Arrays.asList(origin.batches().toArray()));
+    }
+}
@@ -0,0 +1,52 @@
+package io.jcp.provider.impl;
+
+import io.jcp.bean.MockTextProduct;
+import io.jcp.bean.MockTextQuery;
+import io.jcp.cache.SegmentedLruCache;
+import io.jcp.provider.MockTextProvider;
+import org.junit.Test;
+
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+public final class CachingProviderTest {
+
+    @Test(timeout = 30000)
+    public void testThatRepeatedQueryWillBeServedFromCache() throws Exception {
+        AtomicInteger fetches = new AtomicInteger();
+        MockTextProvider origin = new MockTextProvider();
+        CachingProvider<MockTextQuery, MockTextProduct> provider = new CachingProvider<>(
+            q -> {
+                fetches.incrementAndGet();
+                return origin.fetch(q);
+            },
+            Executors.newSingleThreadExecutor(),
+            new SegmentedLruCache<>(10)
+        );
+        MockTextQuery query = new MockTextQuery("ping");
+        assertEquals("ping_pong", provider.fetch(query).get().getResponse());
+        assertEquals("ping_pong", provider.fetch(query).get().getResponse());
+        assertEquals(1, fetches.get());
+        assertEquals(1, provider.stats().getHits());
+        assertEquals(1, provider.stats().getMisses());
+    }
+
+    @Test(timeout = 30000)
+    public void testThatEmptyProductWillNotBeCached() throws Exception {
+        AtomicInteger fetches = new AtomicInteger();
+        CachingProvider<MockTextQuery, MockTextProduct> provider = new CachingProvider<>(
+            q -> {
+                fetches.incrementAndGet();
+                return Optional.empty();
+            },
+            Executors.newSingleThreadExecutor(),
+            new SegmentedLruCache<>(10)
+        );
+        provider.fetch(new MockTextQuery("ping"));
+        provider.fetch(new MockTextQuery("ping"));
+        assertEquals(2, fetches.get());
+    }
+}
@@ -0,0 +1,133 @@
+package io.jcp.provider.impl;
+
+import io.jcp.bean.MockTextProduct;
+import io.jcp.bean.MockTextQuery;
+import io.jcp.provider.Provider;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.Thread.sleep;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public final class HedgingProviderTest {
+    private static final long SLOW_DELAY = 5000;
+
+    private ExecutorService executor;
+    private AtomicInteger interrupted;
+    private Provider<MockTextQuery, MockTextProduct> primary;
+    private Provider<MockTextQuery, MockTextProduct> alternate;
+
+    @Before
+    public void setUp() throws Exception {
+        this.executor = Executors.newCachedThreadPool();
+        this.interrupted = new AtomicInteger();
+        this.primary = q -> {
+            try {
+                sleep(q.getRequest().startsWith("slow") ? SLOW_DELAY : 10);
+            } catch (InterruptedException e) {
+                this.interrupted.incrementAndGet();
+                return Optional.empty();
+            }
+            return Optional.of(new MockTextProduct(q.getRequest() + "_primary", Optional.of(q)));
+        };
+        this.alternate = q -> Optional.of(new MockTextProduct(q.getRequest() + "_alternate", Optional.of(q)));
+    }
+
+    @Test(timeout = 30000)
+    public void testThatSlowFetchIsHedged() throws Exception {
+        HedgingProvider<MockTextQuery, MockTextProduct> hedging =
+            new HedgingProvider<>(primary, alternate, executor, 0.95, 0.5);
+        warmUp(hedging);
+        assertTrue(hedging.delay(TimeUnit.NANOSECONDS) > 0);
+        long hedged = hedging.countHedged();
+        int cancelled = interrupted.get();
+        long started = System.currentTimeMillis();
+        MockTextProduct product = hedging.fetchAsync(new MockTextQuery("slow")).get().get();
+        assertTrue(System.currentTimeMillis() - started < SLOW_DELAY);
+        assertEquals("slow_alternate", product.getResponse());
+        assertEquals(hedged + 1, hedging.countHedged());
+        sleep(100);
+        assertEquals("losing fetch must be cancelled", cancelled + 1, interrupted.get());
+    }
+
+    @Test(timeout = 30000)
+    public void testThatBudgetCapsHedges() throws Exception {
+        HedgingProvider<MockTextQuery, MockTextProduct> hedging =
+            new HedgingProvider<>(primary, alternate, executor, 0.95, 0);
+        warmUp(hedging);
+        MockTextProduct product = hedging.fetchAsync(new MockTextQuery("slow")).get().get();
+        assertEquals("slow_primary", product.getResponse());
+        assertEquals(0, hedging.countHedged());
+    }
+
+    @Test(timeout = 30000)
+    public void testThatFailedPrimaryLosesToHedge() throws Exception {
+        Provider<MockTextQuery, MockTextProduct> failing = q -> {
+            if (q.getRequest().startsWith("fast")) {
+                return primary.fetch(q);
+            }
+            try {
+                sleep(200);
+            } catch (InterruptedException e) {
+                return Optional.empty();
+            }
+            throw new IllegalStateException("can't fetch");
+        };
+        Provider<MockTextQuery, MockTextProduct> slowAlternate = q -> {
+            try {
+                sleep(500);
+            } catch (InterruptedException e) {
+                return Optional.empty();
+            }
+            return alternate.fetch(q);
+        };
+        HedgingProvider<MockTextQuery, MockTextProduct> hedging =
+            new HedgingProvider<>(failing, slowAlternate, executor, 0.95, 0.5);
+        warmUp(hedging);
+        long delay = hedging.delay(TimeUnit.MILLISECONDS);
+        assertTrue(delay > 0 && delay < 200);
+        MockTextProduct product = hedging.fetchAsync(new MockTextQuery("failing")).get().get();
+        assertEquals("failing_alternate", product.getResponse());
+    }
+
+    @Test(timeout = 30000)
+    public void testThatEmptyPrimaryLosesToHedge() throws Exception {
+        Provider<MockTextQuery, MockTextProduct> empty = q -> {
+            if (q.getRequest().startsWith("fast")) {
+                return primary.fetch(q);
+            }
+            try {
+                sleep(200);
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+            return Optional.empty();
+        };
+        Provider<MockTextQuery, MockTextProduct> slowAlternate = q -> {
+            try {
+                sleep(500);
+            } catch (InterruptedException e) {
+                return Optional.empty();
+            }
+            return alternate.fetch(q);
+        };
+        HedgingProvider<MockTextQuery, MockTextProduct> hedging =
+            new HedgingProvider<>(empty, slowAlternate, executor, 0.95, 0.5);
+        warmUp(hedging);
+        MockTextProduct product = hedging.fetchAsync(new MockTextQuery("empty")).get().get();
+        assertEquals("empty_alternate", product.getResponse());
+    }
+
+    private static void warmUp(HedgingProvider<MockTextQuery, MockTextProduct> hedging) {
+        for (int i = 0; i < 32; i++) {
+            hedging.fetch(new MockTextQuery("fast" + i));
+        }
+    }
+}
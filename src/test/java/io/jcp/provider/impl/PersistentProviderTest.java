@@ -0,0 +1,65 @@
+package io.jcp.provider.impl;
+
+import io.jcp.bean.MockTextProduct;
+import io.jcp.bean.MockTextQuery;
+import io.jcp.cache.PersistentStore;
+import io.jcp.codec.Codec;
+import io.jcp.provider.MockTextProvider;
+import io.jcp.provider.Provider;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+public final class PersistentProviderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test(timeout = 30000)
+    public void testThatProductsWillBeServedFromDiskAfterRestart() throws Exception {
+        AtomicInteger fetches = new AtomicInteger();
+        MockTextProvider origin = new MockTextProvider();
+        Provider<MockTextQuery, MockTextProduct> counting = q -> {
+            fetches.incrementAndGet();
+            return origin.fetch(q);
+        };
+        Path directory = folder.getRoot().toPath();
+        MockTextQuery query = new MockTextQuery("ping");
+        try (PersistentStore store = new PersistentStore(directory, 1 << 16)) {
+            assertEquals("ping_pong", provider(counting, store).fetch(query).get().getResponse());
+        }
+        try (PersistentStore store = new PersistentStore(directory, 1 << 16)) {
+            assertEquals("ping_pong", provider(counting, store).fetch(query).get().getResponse());
+        }
+        assertEquals(1, fetches.get());
+    }
+
+    private static PersistentProvider<MockTextQuery, MockTextProduct> provider(
+        Provider<MockTextQuery, MockTextProduct> provider, PersistentStore store) {
+        Codec<String> utf8 = Codec.utf8();
+        return new PersistentProvider<>(
+            provider, Executors.newSingleThreadExecutor(), store, MockTextQuery::getRequest,
+            new Codec<MockTextProduct>() {
+                @Override
+                public byte[] encode(MockTextProduct value) {
+                    return utf8.encode(value.getResponse());
+                }
+
+                @Override
+                public MockTextProduct decode(byte[] bytes) {
+                    String response = utf8.decode(bytes);
+                    return new MockTextProduct(response, Optional.of(new MockTextQuery(
+                        response.substring(0, response.length() - MockTextProvider.DEFAULT_RESPONSE.length())
+                    )));
+                }
+            }
+        );
+    }
+}
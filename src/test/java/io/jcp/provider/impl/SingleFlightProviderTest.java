@@ -0,0 +1,83 @@
+package io.jcp.provider.impl;
+
+import io.jcp.bean.MockTextProduct;
+import io.jcp.bean.MockTextQuery;
+import io.jcp.provider.MockTextProvider;
+import io.jcp.provider.Provider;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+public final class SingleFlightProviderTest {
+
+    private AtomicInteger fetches;
+    private ExecutorService executor;
+    private Provider<MockTextQuery, MockTextProduct> provider;
+
+    @Before
+    public void setUp() throws Exception {
+        this.fetches = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool();
+        MockTextProvider origin = new MockTextProvider();
+        this.provider = q -> {
+            this.fetches.incrementAndGet();
+            return origin.fetch(q);
+        };
+    }
+
+    @Test(timeout = 30000)
+    public void testThatConcurrentEqualQueriesShareOneFetch() throws Exception {
+        SingleFlightProvider<MockTextQuery, MockTextProduct> singleFlight =
+            new SingleFlightProvider<>(provider, executor);
+        List<CompletableFuture<Optional<MockTextProduct>>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(singleFlight.fetchAsync(new MockTextQuery("ping")));
+        }
+        assertEquals(1, singleFlight.countInFlight());
+        for (CompletableFuture<Optional<MockTextProduct>> future : futures) {
+            assertEquals("ping_pong", future.get().get().getResponse());
+        }
+        assertEquals(1, fetches.get());
+        assertEquals(0, singleFlight.countInFlight());
+    }
+
+    @Test(timeout = 30000)
+    public void testThatDifferentQueriesAreFetchedSeparately() throws Exception {
+        SingleFlightProvider<MockTextQuery, MockTextProduct> singleFlight =
+            new SingleFlightProvider<>(provider, executor);
+        CompletableFuture.allOf(
+            singleFlight.fetchAsync(new MockTextQuery("ping1")),
+            singleFlight.fetchAsync(new MockTextQuery("ping2"))
+        ).get();
+        assertEquals(2, fetches.get());
+    }
+
+    @Test(timeout = 30000)
+    public void testThatQueriesWithEqualKeysShareOneFetch() throws Exception {
+        SingleFlightProvider<MockTextQuery, MockTextProduct> singleFlight =
+            new SingleFlightProvider<>(provider, executor, q -> q.getRequest().toLowerCase());
+        CompletableFuture.allOf(
+            singleFlight.fetchAsync(new MockTextQuery("ping")),
+            singleFlight.fetchAsync(new MockTextQuery("PING"))
+        ).get();
+        assertEquals(1, fetches.get());
+    }
+
+    @Test(timeout = 30000)
+    public void testThatCompletedQueryWillBeFetchedAgain() throws Exception {
+        SingleFlightProvider<MockTextQuery, MockTextProduct> singleFlight =
+            new SingleFlightProvider<>(provider, executor);
+        singleFlight.fetch(new MockTextQuery("ping"));
+        singleFlight.fetch(new MockTextQuery("ping"));
+        assertEquals(2, fetches.get());
+    }
+}
@@ -0,0 +1,32 @@
+package io.jcp.service;
+
+import org.junit.Test;
+
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public final class RetryPolicyTest {
+
+    @Test
+    public void testThatBackoffGrowsUpToLimit() throws Exception {
+        RetryPolicy<String> policy = new RetryPolicy<>(10, 100, 1000, TimeUnit.NANOSECONDS);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(policy.backoff(1) <= 100);
+            assertTrue(policy.backoff(3) <= 400);
+            assertTrue(policy.backoff(9) <= 1000);
+        }
+    }
+
+    @Test
+    public void testThatAttemptsAreLimited() throws Exception {
+        RetryPolicy<String> policy = new RetryPolicy<>(2, 1, 1, TimeUnit.SECONDS);
+        assertTrue(policy.shouldRetry(1, Optional.empty(), null));
+        assertFalse(policy.shouldRetry(2, Optional.empty(), null));
+        assertFalse(policy.shouldRetry(1, Optional.of("product"), null));
+        assertFalse(policy.shouldRetry(1, null, new CancellationException()));
+    }
+}
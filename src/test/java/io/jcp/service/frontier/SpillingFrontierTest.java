@@ -0,0 +1,95 @@
+package io.jcp.service.frontier;
+
+import io.jcp.codec.Codec;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public final class SpillingFrontierTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testThatQueriesArePolledInOrderOfAdding() throws Exception {
+        try (SpillingFrontier<String> frontier = frontier(10, 256)) {
+            for (int i = 0; i < 1000; i++) {
+                frontier.add("ping" + i);
+            }
+            assertEquals(1000, frontier.size());
+            assertEquals(990, frontier.countSpilled());
+            for (int i = 0; i < 1000; i++) {
+                assertEquals("ping" + i, frontier.poll().get());
+            }
+            assertFalse(frontier.poll().isPresent());
+            assertEquals(0, frontier.size());
+        }
+    }
+
+    @Test
+    public void testThatQueriesAddedWhilePollingKeepOrder() throws Exception {
+        try (SpillingFrontier<String> frontier = frontier(3, 64)) {
+            int added = 0;
+            int polled = 0;
+            for (int i = 0; i < 100; i++) {
+                frontier.add("ping" + added++);
+                frontier.add("ping" + added++);
+                assertEquals("ping" + polled++, frontier.poll().get());
+            }
+            while (polled < added) {
+                assertEquals("ping" + polled++, frontier.poll().get());
+            }
+            assertFalse(frontier.poll().isPresent());
+        }
+    }
+
+    @Test
+    public void testThatQueriesLargerThanBufferAreSpilled() throws Exception {
+        char[] chars = new char[100 * 1024];
+        Arrays.fill(chars, 'p');
+        String large = new String(chars);
+        try (SpillingFrontier<String> frontier = frontier(1, 1024)) {
+            frontier.add("ping");
+            frontier.add(large);
+            frontier.add("pong");
+            assertEquals("ping", frontier.poll().get());
+            assertEquals(large, frontier.poll().get());
+            assertEquals("pong", frontier.poll().get());
+        }
+    }
+
+    @Test
+    public void testThatReadSegmentsAreDeleted() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        try (SpillingFrontier<String> frontier = frontier(10, 256)) {
+            for (int i = 0; i < 1000; i++) {
+                frontier.add("ping" + i);
+            }
+            for (int i = 0; i < 1000; i++) {
+                frontier.poll();
+            }
+            assertEquals(0, files(directory));
+            frontier.add("ping");
+            frontier.add("pong");
+        }
+        assertEquals(0, files(directory));
+    }
+
+    private SpillingFrontier<String> frontier(int capacity, long segmentSize) {
+        return new SpillingFrontier<>(folder.getRoot().toPath(), capacity, segmentSize, Codec.utf8());
+    }
+
+    private static long files(Path directory) throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package io.jcp.service.scheduler;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public final class PolitenessSchedulerTest {
+
+    @Test(timeout = 30000)
+    public void testThatQueriesCompletedRightAwayDoNotGrowStack() throws Exception {
+        PolitenessScheduler<Integer> scheduler = new PolitenessScheduler<>(
+            q -> "host", 1_000_000_000, 1_000_000, 1
+        );
+        CompletableFuture<Integer> blocker = new CompletableFuture<>();
+        scheduler.schedule(-1, () -> blocker);
+        CompletableFuture<Integer> last = null;
+        for (int i = 0; i < 100_000; i++) {
+            int query = i;
+            last = scheduler.schedule(query, () -> CompletableFuture.completedFuture(query));
+        }
+        blocker.complete(-1);
+        assertEquals(99_999, (int) last.get());
+        assertEquals(0, scheduler.countPending());
+    }
+
+    @Test(timeout = 30000)
+    public void testThatRateIsLimitedPerKey() throws Exception {
+        PolitenessScheduler<String> scheduler = new PolitenessScheduler<>(
+            q -> q.substring(0, 1), 10, 1, 10
+        );
+        long started = System.nanoTime();
+        List<CompletableFuture<Long>> slow = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            slow.add(scheduler.schedule("a" + i, () -> CompletableFuture.completedFuture(System.nanoTime())));
+        }
+        long fast = scheduler.schedule("b", () -> CompletableFuture.completedFuture(System.nanoTime())).get();
+        assertTrue("other keys must not wait", fast - started < 100_000_000L);
+        assertEquals(4, scheduler.countPending());
+        long last = slow.get(4).get();
+        assertTrue("five queries must take at least 400 ms", last - started >= 380_000_000L);
+        assertEquals(0, scheduler.countPending());
+    }
+
+    @Test(timeout = 30000)
+    public void testThatConcurrencyIsLimitedPerKey() throws Exception {
+        PolitenessScheduler<String> scheduler = new PolitenessScheduler<>(
+            q -> q, 1000, 100, 2
+        );
+        AtomicInteger started = new AtomicInteger();
+        List<CompletableFuture<Integer>> running = new ArrayList<>();
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            CompletableFuture<Integer> task = new CompletableFuture<>();
+            running.add(task);
+            results.add(scheduler.schedule("a", () -> {
+                started.incrementAndGet();
+                return task;
+            }));
+        }
+        assertEquals(2, started.get());
+        running.get(0).complete(0);
+        assertEquals(3, started.get());
+        running.forEach(t -> t.complete(1));
+        for (CompletableFuture<Integer> result : results) {
+            result.get();
+        }
+        assertEquals(5, started.get());
+    }
+}
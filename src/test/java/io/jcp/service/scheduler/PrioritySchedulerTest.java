@@ -0,0 +1,84 @@
+package io.jcp.service.scheduler;
+
+import io.jcp.executor.QueryExecutors;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.Thread.sleep;
+import static org.junit.Assert.assertEquals;
+
+public final class PrioritySchedulerTest {
+
+    @Test(timeout = 30000)
+    public void testThatQueriesCompletedRightAwayDoNotGrowStack() throws Exception {
+        PriorityScheduler<Integer> scheduler = new PriorityScheduler<>(1, 1, TimeUnit.HOURS);
+        CompletableFuture<Integer> blocker = new CompletableFuture<>();
+        scheduler.schedule(-1, () -> blocker);
+        CompletableFuture<Integer> last = null;
+        for (int i = 0; i < 100_000; i++) {
+            int query = i;
+            last = scheduler.schedule(query, () -> CompletableFuture.completedFuture(query));
+        }
+        blocker.complete(-1);
+        assertEquals(99_999, (int) last.get());
+        assertEquals(0, scheduler.countPending());
+    }
+
+    @Test(timeout = 30000)
+    public void testThatUrgentQueriesOvertakeBulkOnes() throws Exception {
+        PriorityScheduler<String> scheduler = new PriorityScheduler<>(1, 1, TimeUnit.HOURS);
+        List<String> started = new CopyOnWriteArrayList<>();
+        CompletableFuture<String> blocker = new CompletableFuture<>();
+        scheduler.schedule("blocker", () -> blocker);
+        CompletableFuture<String> last = null;
+        for (String query : Arrays.asList("bulk1", "bulk2")) {
+            last = scheduler.schedule(query, () -> record(started, query));
+        }
+        long now = System.nanoTime();
+        scheduler.schedule("urgent", now + TimeUnit.MILLISECONDS.toNanos(10), () -> record(started, "urgent"));
+        assertEquals(3, scheduler.countPending());
+        blocker.complete("blocker");
+        last.get();
+        assertEquals(Arrays.asList("urgent", "bulk1", "bulk2"), started);
+    }
+
+    @Test(timeout = 30000)
+    public void testThatWaitingQueriesAreNotStarved() throws Exception {
+        PriorityScheduler<String> scheduler = new PriorityScheduler<>(1, 50, TimeUnit.MILLISECONDS);
+        List<String> started = new CopyOnWriteArrayList<>();
+        CompletableFuture<String> blocker = new CompletableFuture<>();
+        scheduler.schedule("blocker", () -> blocker);
+        CompletableFuture<String> bulk = scheduler.schedule("bulk", () -> record(started, "bulk"));
+        sleep(200);
+        long now = System.nanoTime();
+        scheduler.schedule("urgent", now + TimeUnit.MILLISECONDS.toNanos(10), () -> record(started, "urgent"));
+        blocker.complete("blocker");
+        bulk.get();
+        assertEquals("bulk", started.get(0));
+    }
+
+    @Test(timeout = 30000)
+    public void testThatEndlessDefaultDeadlineIsOrderedAfterFiniteOne() throws Exception {
+        PriorityScheduler<String> scheduler = new PriorityScheduler<>(1, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        List<String> started = new CopyOnWriteArrayList<>();
+        CompletableFuture<String> blocker = new CompletableFuture<>();
+        scheduler.schedule("blocker", () -> blocker);
+        CompletableFuture<String> bulk = scheduler.schedule("bulk", () -> record(started, "bulk"));
+        scheduler.schedule(
+            "urgent", QueryExecutors.deadline(1, TimeUnit.DAYS), () -> record(started, "urgent")
+        );
+        blocker.complete("blocker");
+        bulk.get();
+        assertEquals(Arrays.asList("urgent", "bulk"), started);
+    }
+
+    private static CompletableFuture<String> record(List<String> started, String query) {
+        started.add(query);
+        return CompletableFuture.completedFuture(query);
+    }
+}